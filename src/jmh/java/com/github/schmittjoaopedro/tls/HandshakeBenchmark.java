@@ -0,0 +1,83 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connect and handshake against the in-process {@link LoopbackTLSServer}, through the sniffing connection manager or
+ * through a plain HttpClient socket factory. The client keeps its session cache, so steady state measures resumed
+ * handshakes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HandshakeBenchmark {
+
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    @Param({"TLSv1.2", "TLSv1.3"})
+    private String protocol;
+
+    private LoopbackTLSServer server;
+    private PacketsSniffer packetsSniffer;
+    private PacketsSnifferConnectionManager connectionManager;
+    private SSLConnectionSocketFactory plainSocketFactory;
+    private HttpHost host;
+    private InetSocketAddress address;
+
+    @Setup
+    public void setUp() throws Exception {
+        server = new LoopbackTLSServer();
+        SSLContext sslContext = new SSLContextCache(1).newSSLContext(
+                LoopbackTLSServer.KEY_STORE, "PKCS12", LoopbackTLSServer.KEY_STORE_PASSWORD, protocol);
+        packetsSniffer = new PacketsSniffer();
+        connectionManager = new PacketsSnifferConnectionManager(packetsSniffer, sslContext, new String[]{protocol}, null);
+        plainSocketFactory = new SSLConnectionSocketFactory(sslContext, new String[]{protocol}, null,
+                SSLConnectionSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER);
+        host = new HttpHost("localhost", server.getPort(), "https");
+        address = new InetSocketAddress("localhost", server.getPort());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        connectionManager.shutdown();
+        server.close();
+    }
+
+    @Benchmark
+    public void sniffedHandshake() throws IOException {
+        connectionManager.openSecureSocket(host, address, TIMEOUT_MILLIS).close();
+        packetsSniffer.recycle();
+    }
+
+    @Benchmark
+    public void plainHandshake() throws IOException {
+        HttpContext context = HttpClientContext.create();
+        Socket socket = plainSocketFactory.createSocket(context);
+        socket.setSoTimeout(TIMEOUT_MILLIS);
+        plainSocketFactory.connectSocket(TIMEOUT_MILLIS, socket, host, address, null, context).close();
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HexEncodingBenchmark {
+
+    @Param({"16", "1024", "16384", "262144"})
+    private int size;
+
+    private byte[] bytes;
+    private ByteBuffer buffer;
+    private StringBuilder out;
+
+    @Setup
+    public void setUp() {
+        bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        buffer = ByteBuffer.wrap(bytes);
+        out = new StringBuilder(size * 2);
+    }
+
+    @Benchmark
+    public String formatPerByte() {
+        // the encoding ConversionUtils used before the lookup table
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    @Benchmark
+    public String byteArrayToHex() {
+        return ConversionUtils.byteArrayToHex(bytes);
+    }
+
+    @Benchmark
+    public int appendHex() throws IOException {
+        out.setLength(0);
+        ConversionUtils.appendHex(out, buffer, 0, size);
+        return out.length();
+    }
+}
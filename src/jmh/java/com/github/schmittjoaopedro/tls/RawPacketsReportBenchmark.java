@@ -0,0 +1,90 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hex rendering of a large capture, written to a sink that discards characters so only the report path is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RawPacketsReportBenchmark {
+
+    @Param({"64", "4096"})
+    private int packets;
+
+    @Param({"1500"})
+    private int packetSize;
+
+    private List<ConnectionResult> connections;
+    private AnalysisLog analysisLog;
+
+    @Setup
+    public void setUp() {
+        PacketsSniffer packetsSniffer = new PacketsSniffer();
+        PacketCaptureSession captureSession = packetsSniffer.getCaptureSession(packetsSniffer.createSnifferSocket());
+        byte[] packet = new byte[packetSize];
+        Random random = new Random(42);
+        for (int i = 0; i < packets; i++) {
+            random.nextBytes(packet);
+            if (i % 2 == 0) {
+                captureSession.captureOutput(packet, 0, packet.length);
+            } else {
+                captureSession.captureInput(packet, 0, packet.length);
+            }
+        }
+        connections = Collections.singletonList(new ConnectionResult(captureSession,
+                new TLSSnifferService().getCertificateAnalysisCache(), true));
+        analysisLog = new AnalysisLog(new DiscardWriter());
+    }
+
+    @TearDown
+    public void tearDown() {
+        connections.get(0).releasePackets();
+    }
+
+    @Benchmark
+    public void printTLSTransmissionRawPackets() {
+        AnalysisResult.printTLSTransmissionRawPackets(analysisLog, connections);
+    }
+
+    private static class DiscardWriter extends Writer {
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+        }
+
+        @Override
+        public Writer append(CharSequence csq) {
+            return this;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.net.ssl.SSLContext;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SSLContextBenchmark {
+
+    private final SSLContextCache sslContextCache = new SSLContextCache(4);
+
+    @Benchmark
+    public SSLContext uncachedSSLContext() throws Exception {
+        return sslContextCache.newSSLContext(LoopbackTLSServer.KEY_STORE, "PKCS12", LoopbackTLSServer.KEY_STORE_PASSWORD, "TLSv1.2");
+    }
+
+    @Benchmark
+    public SSLContext cachedSSLContext() throws Exception {
+        return sslContextCache.getSSLContext(LoopbackTLSServer.KEY_STORE, "PKCS12", LoopbackTLSServer.KEY_STORE_PASSWORD, "TLSv1.2");
+    }
+}
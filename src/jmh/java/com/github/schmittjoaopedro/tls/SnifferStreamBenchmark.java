@@ -0,0 +1,149 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the sniffer stream wrappers against plain sockets, over loopback TCP: one server discards what it receives,
+ * the other streams zeros. Each operation moves {@link #BLOCK_SIZE} bytes, one at a time or in a single call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SnifferStreamBenchmark {
+
+    private static final int BLOCK_SIZE = 1024;
+    private static final int RECYCLE_EVERY_OPERATIONS = 1024;
+
+    @Param({"false", "true"})
+    private boolean sniffed;
+
+    private ServerSocket discardServer;
+    private ServerSocket chargenServer;
+    private PacketsSniffer packetsSniffer;
+    private Socket writeSocket;
+    private Socket readSocket;
+    private OutputStream out;
+    private InputStream in;
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private long operations;
+
+    @Setup
+    public void setUp() throws IOException {
+        discardServer = startServer(false);
+        chargenServer = startServer(true);
+        packetsSniffer = new PacketsSniffer();
+        writeSocket = connect(discardServer);
+        readSocket = connect(chargenServer);
+        out = writeSocket.getOutputStream();
+        in = readSocket.getInputStream();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        writeSocket.close();
+        readSocket.close();
+        discardServer.close();
+        chargenServer.close();
+        packetsSniffer.recycle();
+    }
+
+    @Benchmark
+    public void writeSingleBytes() throws IOException {
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            out.write(i);
+        }
+        recycleCaptures();
+    }
+
+    @Benchmark
+    public void writeBulk() throws IOException {
+        out.write(block, 0, BLOCK_SIZE);
+        recycleCaptures();
+    }
+
+    @Benchmark
+    public int readSingleBytes() throws IOException {
+        int sum = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            sum += in.read();
+        }
+        recycleCaptures();
+        return sum;
+    }
+
+    @Benchmark
+    public int readBulk() throws IOException {
+        int read = 0;
+        while (read < BLOCK_SIZE) {
+            read += in.read(block, read, BLOCK_SIZE - read);
+        }
+        recycleCaptures();
+        return read;
+    }
+
+    private void recycleCaptures() {
+        // keeps the captures from growing for the whole iteration
+        if (sniffed && ++operations % RECYCLE_EVERY_OPERATIONS == 0) {
+            for (PacketCaptureSession captureSession : packetsSniffer.getCaptureSessions()) {
+                captureSession.recycle();
+            }
+        }
+    }
+
+    private Socket connect(ServerSocket server) throws IOException {
+        Socket socket = sniffed ? packetsSniffer.createSnifferSocket() : new Socket();
+        socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort()));
+        if (sniffed) {
+            packetsSniffer.getCaptureSession(socket).setPacketSniffingActive(true);
+        }
+        return socket;
+    }
+
+    private static ServerSocket startServer(boolean chargen) throws IOException {
+        ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Thread thread = new Thread(() -> {
+            byte[] buffer = new byte[64 * 1024];
+            try (Socket socket = server.accept()) {
+                if (chargen) {
+                    OutputStream out = socket.getOutputStream();
+                    while (true) {
+                        out.write(buffer);
+                    }
+                } else {
+                    InputStream in = socket.getInputStream();
+                    while (in.read(buffer) != -1) {
+                        // discard
+                    }
+                }
+            } catch (IOException ex) {
+                // benchmark finished
+            }
+        }, chargen ? "chargen-server" : "discard-server");
+        thread.setDaemon(true);
+        thread.start();
+        return server;
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.schmittjoaopedro.tls;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Handshake with one resolved address of a {@link MultiAddressReport}, and why it stands out from the other addresses.
+ */
+public class AddressResult {
+
+    private final InetAddress address;
+    private final ConnectionResult connection;
+    private final String error;
+    private final long elapsedNanos;
+    private final List<String> outlierReasons = new ArrayList<>();
+
+    /**
+     * @param connection null when the connection wasn't captured
+     * @param error      null when the handshake completed
+     */
+    AddressResult(InetAddress address, ConnectionResult connection, String error, long elapsedNanos) {
+        this.address = address;
+        this.connection = connection;
+        this.error = error;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public InetAddress getAddress() {
+        return address;
+    }
+
+    public boolean isSuccessful() {
+        return error == null && connection != null && connection.isSessionEstablished();
+    }
+
+    /**
+     * @return why the handshake failed, null when it didn't
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return session, chain and timings of the connection, null when it wasn't captured
+     */
+    public ConnectionResult getConnection() {
+        return connection;
+    }
+
+    public String getProtocol() {
+        return isSuccessful() ? connection.getProtocol() : null;
+    }
+
+    public String getCipherSuite() {
+        return isSuccessful() ? connection.getCipherSuite() : null;
+    }
+
+    /**
+     * @return SHA-256 fingerprint of the server certificate, null when unknown
+     */
+    public String getCertificateFingerprint() {
+        CertificateChainAnalysis chain = isSuccessful() ? connection.getCertificateChain() : null;
+        return chain != null && chain.getLeaf() != null ? chain.getLeaf().getFingerprint() : null;
+    }
+
+    /**
+     * @return the handshake duration, TCP connect excluded, or -1 when it wasn't observed
+     */
+    public long getHandshakeNanos() {
+        return isSuccessful() ? connection.getHandshakeTimings().getDurationNanos(HandshakePhase.HANDSHAKE) : -1;
+    }
+
+    /**
+     * @return connect plus handshake as seen by the caller
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public boolean isOutlier() {
+        return !outlierReasons.isEmpty();
+    }
+
+    public List<String> getOutlierReasons() {
+        return Collections.unmodifiableList(outlierReasons);
+    }
+
+    void addOutlierReason(String reason) {
+        outlierReasons.add(reason);
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.schmittjoaopedro.tls;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class AnalysisExecutors {
+
+    private AnalysisExecutors() {
+    }
+
+    /**
+     * Virtual threads when the running JDK provides them, otherwise a fixed pool of {@code parallelism} daemon
+     * threads. Virtual thread executors are unbounded, callers limit concurrency themselves.
+     */
+    static ExecutorService newExecutor(String name, int parallelism) {
+        try {
+            // JDK 21+, looked up reflectively to keep the Java 8 target
+            Method virtualThreadExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtualThreadExecutor.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            AtomicInteger threadCount = new AtomicInteger();
+            return Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.schmittjoaopedro.tls;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Report destination of an analysis. Sections are written to the caller's {@link Appendable} as they are produced;
+ * failures of the destination surface as {@link UncheckedIOException} so the report code reads like plain appends.
+ */
+class AnalysisLog {
+
+    private final Appendable out;
+
+    AnalysisLog(Appendable out) {
+        this.out = out;
+    }
+
+    AnalysisLog append(CharSequence text) {
+        try {
+            out.append(text);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return this;
+    }
+
+    AnalysisLog append(char c) {
+        try {
+            out.append(c);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return this;
+    }
+
+    AnalysisLog appendHex(PacketCaptureBuffer captureBuffer, int packetIndex) {
+        try {
+            captureBuffer.appendHex(packetIndex, out);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return this;
+    }
+}
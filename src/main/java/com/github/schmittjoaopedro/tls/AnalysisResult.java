@@ -0,0 +1,440 @@
+package com.github.schmittjoaopedro.tls;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of one analysis, as data: the request, each connection with its TLS session, certificates and timings, and
+ * the captured records and packets when the handshake was logged. Nothing is formatted until {@link #appendText} or
+ * {@link #appendJson} is called, so callers reading fields only pay for what they read.
+ * <p>
+ * The text is the report {@link TLSSnifferService} has always printed, JVM-wide sections of {@link TLSInventory}
+ * included. JSON leaves those sections out, they are the same for every result.
+ * <p>
+ * A result logging the handshake holds its capture chunks until {@link #release()} hands them back to the pool;
+ * unreleased, they are left to the garbage collector.
+ */
+public class AnalysisResult {
+
+    private final AnalysisTarget target;
+    private final boolean probe;
+    private final TLSInventory.SupportedParameters supportedParameters;
+    private final String error;
+    private final ResponseResult response;
+    private final List<ConnectionResult> connections;
+
+    private AnalysisResult(AnalysisTarget target, boolean probe, TLSInventory.SupportedParameters supportedParameters,
+                           String error, ResponseResult response, List<ConnectionResult> connections) {
+        this.target = target;
+        this.probe = probe;
+        this.supportedParameters = supportedParameters;
+        this.error = error;
+        this.response = response;
+        this.connections = Collections.unmodifiableList(connections);
+    }
+
+    /**
+     * @param response null when no response was received
+     */
+    static AnalysisResult ofRequest(AnalysisTarget target, TLSInventory.SupportedParameters supportedParameters, String error,
+                                    ResponseResult response, List<ConnectionResult> connections) {
+        return new AnalysisResult(target, false, supportedParameters, error, response, connections);
+    }
+
+    static AnalysisResult ofProbe(AnalysisTarget target, String error, List<ConnectionResult> connections) {
+        return new AnalysisResult(target, true, null, error, null, connections);
+    }
+
+    public AnalysisTarget getTarget() {
+        return target;
+    }
+
+    /**
+     * @return whether the handshake was made by {@link SSLEngineProbe}, without an HTTP request
+     */
+    public boolean isProbe() {
+        return probe;
+    }
+
+    /**
+     * @return what the SSLContext of the analysis supports, null when it couldn't be created or for probes
+     */
+    public TLSInventory.SupportedParameters getSupportedParameters() {
+        return supportedParameters;
+    }
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    /**
+     * @return why the request or the probe failed, null when it didn't
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return the HTTP response, null when none was received or for probes
+     */
+    public ResponseResult getResponse() {
+        return response;
+    }
+
+    /**
+     * @return the HTTP status, -1 without a response
+     */
+    public int getResponseStatus() {
+        return response != null ? response.getStatus() : -1;
+    }
+
+    /**
+     * @return the body read, null without a response or when the response mode doesn't keep it
+     */
+    public String getResponseBody() {
+        return response != null ? response.getBody() : null;
+    }
+
+    public List<ConnectionResult> getConnections() {
+        return connections;
+    }
+
+    /**
+     * Recycles the captures the result holds; their packets are no longer available afterwards.
+     */
+    public synchronized void release() {
+        for (ConnectionResult connection : connections) {
+            connection.releasePackets();
+        }
+    }
+
+    public synchronized void appendText(Appendable out) {
+        AnalysisLog analysisLog = new AnalysisLog(out);
+        analysisLog.append("\n");
+        if (probe) {
+            analysisLog.append("---------------------------\n");
+            analysisLog.append("Probing endpoint using SSLEngine\n");
+            analysisLog.append("Probing        : " + target.getUrl() + "\n");
+            if (error != null) {
+                analysisLog.append("Error probing endpoint\n");
+                analysisLog.append(error);
+                analysisLog.append("\n");
+            } else {
+                analysisLog.append("Handshake completed\n");
+            }
+            analysisLog.append("\n");
+        } else {
+            analysisLog.append(TLSInventory.getProvidersText());
+            if (error != null) {
+                analysisLog.append("Error requesting URL\n");
+                analysisLog.append(error);
+                analysisLog.append("\n");
+            }
+            if (supportedParameters != null) {
+                analysisLog.append(supportedParameters.getText());
+            }
+            if (response != null) {
+                printRequestInfo(analysisLog);
+            }
+        }
+        for (ConnectionResult connection : connections) {
+            if (connection.isSessionEstablished()) {
+                printTLSSessionInfo(analysisLog, connection);
+            }
+        }
+        for (ConnectionResult connection : connections) {
+            printHandshakeTimings(analysisLog, connection);
+        }
+        if (target.isLogHandshake()) {
+            printTLSRecords(analysisLog, connections);
+            printTLSTransmissionRawPackets(analysisLog, connections);
+        }
+    }
+
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        appendText(text);
+        return text.toString();
+    }
+
+    private void printRequestInfo(AnalysisLog analysisLog) {
+        analysisLog.append("---------------------------\n");
+        analysisLog.append("Calling endpoint using Detailed client\n");
+        analysisLog.append("Requesting     : " + target.getUrl() + "\n");
+        analysisLog.append("Response status: " + response.getStatus() + "\n");
+        ResponseMode.Kind kind = response.getMode().getKind();
+        if (response.getError() != null) {
+            analysisLog.append("Failed read response body: " + response.getError());
+        } else if (kind == ResponseMode.Kind.BODY) {
+            analysisLog.append("Response body  : " + response.getBody()
+                    + (response.isTruncated() ? "... (first " + response.getBodyBytes() + " bytes)" : "") + "\n");
+        } else if (kind == ResponseMode.Kind.DRAIN) {
+            analysisLog.append("Response body  : " + response.getBodyBytes() + " bytes drained\n");
+            analysisLog.append("Time to first byte: " + (response.getFirstByteNanos() >= 0
+                    ? HandshakeLatencyStats.millis(response.getFirstByteNanos()) + " ms" : "n/a") + "\n");
+            analysisLog.append("Download       : " + HandshakeLatencyStats.millis(response.getDownloadNanos()) + " ms ("
+                    + String.format("%.1f", response.getThroughputBytesPerSecond() / 1024) + " KB/s)\n");
+        }
+        analysisLog.append("\n");
+    }
+
+    private static void printTLSSessionInfo(AnalysisLog analysisLog, ConnectionResult connection) {
+        analysisLog.append("---------------------------\n");
+        analysisLog.append("TLS session information\n");
+        analysisLog.append("Client: " + connection.getPeerHost() + ":" + connection.getPeerPort() + "\n");
+        analysisLog.append("\tProtocol: " + connection.getProtocol() + "\n");
+        analysisLog.append("\tSessionID: " + connection.getSessionId() + "\n");
+        analysisLog.append("\tCipherSuite: " + connection.getCipherSuite() + "\n");
+        CertificateChainAnalysis chainAnalysis = connection.getCertificateChain();
+        if (chainAnalysis == null) {
+            analysisLog.append("Error printing sessions TLS info\n");
+            analysisLog.append(String.valueOf(connection.getCertificateError()));
+            analysisLog.append("\n");
+            return;
+        }
+        for (CertificateAnalysis certificate : chainAnalysis.getCertificates()) {
+            analysisLog.append("\tX509 Certificate: " + certificate.getSubject() + "\n");
+            analysisLog.append("\t\tIssuer: " + certificate.getIssuer() + "\n");
+            analysisLog.append("\t\tAlgorithm: " + certificate.getSignatureAlgorithm() + "\n");
+            analysisLog.append("\t\tValidity: " + certificate.getNotAfter() + " (" + certificate.getDaysToExpiry() + " days left)\n");
+            analysisLog.append("\t\tPublic key: " + certificate.getPublicKeyAlgorithm()
+                    + (certificate.getKeySize() > 0 ? " " + certificate.getKeySize() + " bits" : "") + "\n");
+            if (!certificate.getSubjectAlternativeNames().isEmpty()) {
+                analysisLog.append("\t\tSubject alternative names: " + String.join(", ", certificate.getSubjectAlternativeNames()) + "\n");
+            }
+            analysisLog.append("\t\tSHA-256: " + certificate.getFingerprint() + "\n");
+        }
+        analysisLog.append("\tChain validation: " + (chainAnalysis.isValid() ? "valid" : "invalid, " + chainAnalysis.getValidationError()) + "\n");
+        analysisLog.append("\n");
+    }
+
+    private static void printHandshakeTimings(AnalysisLog analysisLog, ConnectionResult connection) {
+        analysisLog.append("---------------------------\n");
+        analysisLog.append("TLS handshake timings\n");
+        printConnection(analysisLog, connection);
+        HandshakeTimings handshakeTimings = connection.getHandshakeTimings();
+        for (HandshakePhase phase : HandshakePhase.values()) {
+            analysisLog.append("\t" + phase.getDisplayName() + ": ");
+            if (handshakeTimings.isAvailable(phase)) {
+                analysisLog.append(HandshakeLatencyStats.millis(handshakeTimings.getDurationNanos(phase)) + " ms\n");
+            } else {
+                analysisLog.append("n/a\n");
+            }
+        }
+        analysisLog.append("\n");
+    }
+
+    private static void printTLSRecords(AnalysisLog analysisLog, List<ConnectionResult> connections) {
+        analysisLog.append("---------------------------\n");
+        analysisLog.append("TLS records\n\n");
+        for (ConnectionResult connection : connections) {
+            printConnection(analysisLog, connection);
+            if (connection.getRecordLog() != null) {
+                analysisLog.append(connection.getRecordLog());
+            }
+        }
+        analysisLog.append("\n");
+    }
+
+    static void printTLSTransmissionRawPackets(AnalysisLog analysisLog, List<ConnectionResult> connections) {
+        analysisLog.append("---------------------------\n");
+        analysisLog.append("TLS transmission raw packets (https://tls.ulfheim.net/)\n\n");
+        for (ConnectionResult connection : connections) {
+            printConnection(analysisLog, connection);
+            PacketCaptureSession captureSession = connection.getPackets();
+            if (captureSession == null) {
+                continue;
+            }
+            PacketCaptureBuffer captureBuffer = captureSession.getCaptureBuffer();
+            synchronized (captureSession) {
+                for (int i = 0; i < captureBuffer.getPacketsCount(); i++) {
+                    if (captureBuffer.getPacketLength(i) > 0) {
+                        if (captureBuffer.isOutputPacket(i)) {
+                            analysisLog.append("Output packet: \n");
+                        } else {
+                            analysisLog.append("Input packet: \n");
+                        }
+                        analysisLog.appendHex(captureBuffer, i);
+                        analysisLog.append("\n\n");
+                    }
+                }
+            }
+        }
+        analysisLog.append("\n");
+    }
+
+    private static void printConnection(AnalysisLog analysisLog, ConnectionResult connection) {
+        analysisLog.append("Connection " + connection.getId() + ": " + connection.getRemoteAddress()
+                + (connection.isCaptureTruncated() ? " (capture truncated by policy)" : "") + "\n");
+    }
+
+    /**
+     * One JSON object; timings are in nanoseconds, null when a phase wasn't observed, and packets are hex strings.
+     */
+    public synchronized void appendJson(Appendable out) {
+        AnalysisLog json = new AnalysisLog(out);
+        json.append('{');
+        field(json, "url", target.getUrl()).append(',');
+        field(json, "protocol", target.getProtocol()).append(',');
+        field(json, "cipher", target.getCipher()).append(',');
+        field(json, "client", probe ? "SSLEngine" : "HttpClient").append(',');
+        field(json, "error", error);
+        if (!probe) {
+            json.append(",\"response\":");
+            if (response == null) {
+                json.append("null");
+            } else {
+                json.append("{\"status\":").append(String.valueOf(response.getStatus())).append(',');
+                field(json, "mode", response.getMode().getKind().name()).append(',');
+                field(json, "body", response.getBody()).append(',');
+                json.append("\"bodyBytes\":").append(String.valueOf(response.getBodyBytes())).append(',');
+                json.append("\"truncated\":").append(String.valueOf(response.isTruncated())).append(',');
+                json.append("\"headersNanos\":").append(String.valueOf(response.getHeadersNanos())).append(',');
+                json.append("\"firstByteNanos\":").append(String.valueOf(response.getFirstByteNanos())).append(',');
+                json.append("\"downloadNanos\":").append(String.valueOf(response.getDownloadNanos())).append(',');
+                field(json, "error", response.getError()).append('}');
+            }
+        }
+        json.append(",\"connections\":[");
+        for (int i = 0; i < connections.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendJson(json, connections.get(i));
+        }
+        json.append("]}");
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        appendJson(json);
+        return json.toString();
+    }
+
+    private static void appendJson(AnalysisLog json, ConnectionResult connection) {
+        json.append("{\"id\":").append(String.valueOf(connection.getId())).append(',');
+        field(json, "remoteAddress", connection.getRemoteAddress() != null ? connection.getRemoteAddress().toString() : null).append(',');
+        json.append("\"captureTruncated\":").append(String.valueOf(connection.isCaptureTruncated())).append(',');
+        json.append("\"session\":");
+        if (!connection.isSessionEstablished()) {
+            json.append("null");
+        } else {
+            json.append('{');
+            field(json, "peerHost", connection.getPeerHost()).append(',');
+            json.append("\"peerPort\":").append(String.valueOf(connection.getPeerPort())).append(',');
+            field(json, "protocol", connection.getProtocol()).append(',');
+            field(json, "sessionId", connection.getSessionId()).append(',');
+            field(json, "cipherSuite", connection.getCipherSuite()).append(',');
+            field(json, "certificateError", connection.getCertificateError()).append(',');
+            appendJson(json, connection.getCertificateChain());
+            json.append('}');
+        }
+        json.append(",\"timings\":{");
+        HandshakeTimings handshakeTimings = connection.getHandshakeTimings();
+        for (HandshakePhase phase : HandshakePhase.values()) {
+            if (phase.ordinal() > 0) {
+                json.append(',');
+            }
+            json.append('"').append(phase.name()).append("\":")
+                    .append(handshakeTimings.isAvailable(phase) ? String.valueOf(handshakeTimings.getDurationNanos(phase)) : "null");
+        }
+        json.append("},");
+        field(json, "records", connection.getRecordLog());
+        PacketCaptureSession captureSession = connection.getPackets();
+        if (captureSession != null) {
+            json.append(",\"packets\":[");
+            PacketCaptureBuffer captureBuffer = captureSession.getCaptureBuffer();
+            synchronized (captureSession) {
+                for (int i = 0; i < captureBuffer.getPacketsCount(); i++) {
+                    if (i > 0) {
+                        json.append(',');
+                    }
+                    json.append("{\"direction\":\"").append(captureBuffer.isOutputPacket(i) ? "output" : "input").append("\",");
+                    json.append("\"startNanos\":").append(String.valueOf(captureBuffer.getPacketStartNanos(i))).append(',');
+                    json.append("\"hex\":\"").appendHex(captureBuffer, i).append("\"}");
+                }
+            }
+            json.append(']');
+        }
+        json.append('}');
+    }
+
+    private static void appendJson(AnalysisLog json, CertificateChainAnalysis chainAnalysis) {
+        json.append("\"certificateChain\":");
+        if (chainAnalysis == null) {
+            json.append("null");
+            return;
+        }
+        json.append("{\"valid\":").append(String.valueOf(chainAnalysis.isValid())).append(',');
+        field(json, "validationError", chainAnalysis.getValidationError()).append(",\"certificates\":[");
+        List<CertificateAnalysis> certificates = chainAnalysis.getCertificates();
+        for (int i = 0; i < certificates.size(); i++) {
+            CertificateAnalysis certificate = certificates.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('{');
+            field(json, "subject", certificate.getSubject()).append(',');
+            field(json, "issuer", certificate.getIssuer()).append(',');
+            field(json, "signatureAlgorithm", certificate.getSignatureAlgorithm()).append(',');
+            json.append("\"notBefore\":").append(String.valueOf(certificate.getNotBefore().getTime())).append(',');
+            json.append("\"notAfter\":").append(String.valueOf(certificate.getNotAfter().getTime())).append(',');
+            field(json, "publicKeyAlgorithm", certificate.getPublicKeyAlgorithm()).append(',');
+            json.append("\"keySize\":").append(String.valueOf(certificate.getKeySize())).append(",\"subjectAlternativeNames\":[");
+            List<String> alternativeNames = certificate.getSubjectAlternativeNames();
+            for (int j = 0; j < alternativeNames.size(); j++) {
+                if (j > 0) {
+                    json.append(',');
+                }
+                string(json, alternativeNames.get(j));
+            }
+            json.append("],");
+            field(json, "sha256", certificate.getFingerprint()).append('}');
+        }
+        json.append("]}");
+    }
+
+    private static AnalysisLog field(AnalysisLog json, String name, String value) {
+        json.append('"').append(name).append("\":");
+        return string(json, value);
+    }
+
+    private static AnalysisLog string(AnalysisLog json, String value) {
+        if (value == null) {
+            return json.append("null");
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"');
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+}
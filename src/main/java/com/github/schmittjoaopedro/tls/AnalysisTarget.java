@@ -0,0 +1,37 @@
+package com.github.schmittjoaopedro.tls;
+
+public class AnalysisTarget {
+
+    private final String url;
+    private final String protocol;
+    private final String cipher;
+    private final boolean logHandshake;
+
+    public AnalysisTarget(String url, String protocol, String cipher, boolean logHandshake) {
+        this.url = url;
+        this.protocol = protocol;
+        this.cipher = cipher;
+        this.logHandshake = logHandshake;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public String getCipher() {
+        return cipher;
+    }
+
+    public boolean isLogHandshake() {
+        return logHandshake;
+    }
+
+    @Override
+    public String toString() {
+        return url + " [" + protocol + ", " + cipher + "]";
+    }
+}
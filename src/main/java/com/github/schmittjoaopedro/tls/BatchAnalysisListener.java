@@ -0,0 +1,36 @@
+package com.github.schmittjoaopedro.tls;
+
+/**
+ * Receives the result of each target of a batch as soon as it completes. Calls are made from the thread running
+ * {@link TLSBatchAnalyzer#analyze}, one at a time, in completion order.
+ */
+public interface BatchAnalysisListener {
+
+    /**
+     * Nothing is formatted unless the listener asks the result for it; releasing the result is up to the listener.
+     */
+    void onAnalysisCompleted(AnalysisResult analysisResult, long elapsedNanos);
+
+    /**
+     * Adapts a listener of text reports: each result is rendered, handed over, then released.
+     */
+    static BatchAnalysisListener text(TextListener textListener) {
+        return (analysisResult, elapsedNanos) -> {
+            try {
+                textListener.onAnalysisCompleted(analysisResult.getTarget(), analysisResult.toText(), elapsedNanos);
+            } finally {
+                analysisResult.release();
+            }
+        };
+    }
+
+    /**
+     * Receives the text report {@link TLSSnifferService} has always printed, see {@link #text}.
+     */
+    interface TextListener {
+
+        void onAnalysisCompleted(AnalysisTarget target, String analysisLog, long elapsedNanos);
+
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.github.schmittjoaopedro.tls;
+
+import java.io.IOException;
+
+/**
+ * Raised from a sniffed socket's input stream once its {@link PacketCaptureSession} was asked to abort, typically by a
+ * record listener that has seen everything it needed from the handshake.
+ */
+public class CaptureAbortedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CaptureAbortedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.schmittjoaopedro.tls;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of fixed-size chunks backing {@link PacketCaptureBuffer}s. Released chunks are kept up to {@code maxPooledChunks}
+ * and handed out again, so steady-state capturing allocates nothing.
+ */
+public class CaptureChunkPool {
+
+    private static final CaptureChunkPool DEFAULT_POOL = new CaptureChunkPool(16 * 1024, 1024, false);
+
+    private final int chunkSize;
+    private final int maxPooledChunks;
+    private final boolean direct;
+
+    private final Queue<ByteBuffer> freeChunks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger freeChunksCount = new AtomicInteger();
+
+    public CaptureChunkPool(int chunkSize, int maxPooledChunks, boolean direct) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        this.maxPooledChunks = maxPooledChunks;
+        this.direct = direct;
+    }
+
+    public static CaptureChunkPool getDefault() {
+        return DEFAULT_POOL;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getPooledChunksCount() {
+        return freeChunksCount.get();
+    }
+
+    ByteBuffer acquire() {
+        ByteBuffer chunk = freeChunks.poll();
+        if (chunk != null) {
+            freeChunksCount.decrementAndGet();
+            return chunk;
+        }
+        return direct ? ByteBuffer.allocateDirect(chunkSize) : ByteBuffer.allocate(chunkSize);
+    }
+
+    void release(ByteBuffer chunk) {
+        if (freeChunksCount.incrementAndGet() <= maxPooledChunks) {
+            chunk.clear();
+            freeChunks.offer(chunk);
+        } else {
+            freeChunksCount.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.schmittjoaopedro.tls;
+
+/**
+ * Bounds what a {@link PacketsSniffer} keeps, so sniffing can stay on for long-lived pooled connections. Connections
+ * left out by sampling get plain sockets with no capture at all; sampled ones stop capturing, and parsing, once a
+ * limit is reached.
+ */
+public final class CapturePolicy {
+
+    public static final int UNLIMITED = -1;
+
+    /**
+     * Every connection, every byte.
+     */
+    public static final CapturePolicy CAPTURE_ALL = new CapturePolicy(UNLIMITED, UNLIMITED, 1);
+
+    private final int maxApplicationRecords;
+    private final long maxBytesPerConnection;
+    private final int samplingInterval;
+    private final boolean releaseOnClose;
+
+    /**
+     * @param maxApplicationRecords application data records kept after the handshake, in both directions together, or
+     *                              {@link #UNLIMITED}
+     * @param maxBytesPerConnection bytes kept per connection, in both directions together, or {@link #UNLIMITED}
+     * @param samplingInterval      capture 1 connection in {@code samplingInterval}, starting with the first one
+     */
+    public CapturePolicy(int maxApplicationRecords, long maxBytesPerConnection, int samplingInterval) {
+        this(maxApplicationRecords, maxBytesPerConnection, samplingInterval, false);
+    }
+
+    /**
+     * @param releaseOnClose recycle a session and drop it from {@link PacketsSniffer#getCaptureSessions()} once its
+     *                       socket is closed, so a long-lived sniffer only holds the connections still open; its
+     *                       {@link CaptureSessionListener}s are told first
+     */
+    public CapturePolicy(int maxApplicationRecords, long maxBytesPerConnection, int samplingInterval, boolean releaseOnClose) {
+        if (maxApplicationRecords < UNLIMITED) {
+            throw new IllegalArgumentException("maxApplicationRecords must be positive or UNLIMITED");
+        }
+        if (maxBytesPerConnection < UNLIMITED) {
+            throw new IllegalArgumentException("maxBytesPerConnection must be positive or UNLIMITED");
+        }
+        if (samplingInterval < 1) {
+            throw new IllegalArgumentException("samplingInterval must be at least 1");
+        }
+        this.maxApplicationRecords = maxApplicationRecords;
+        this.maxBytesPerConnection = maxBytesPerConnection;
+        this.samplingInterval = samplingInterval;
+        this.releaseOnClose = releaseOnClose;
+    }
+
+    public int getMaxApplicationRecords() {
+        return maxApplicationRecords;
+    }
+
+    public long getMaxBytesPerConnection() {
+        return maxBytesPerConnection;
+    }
+
+    public int getSamplingInterval() {
+        return samplingInterval;
+    }
+
+    public boolean isReleaseOnClose() {
+        return releaseOnClose;
+    }
+
+    /**
+     * @param connectionNumber 1 for the first connection of a sniffer
+     */
+    boolean isSampled(long connectionNumber) {
+        return (connectionNumber - 1) % samplingInterval == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "CapturePolicy{" +
+                "maxApplicationRecords=" + maxApplicationRecords +
+                ", maxBytesPerConnection=" + maxBytesPerConnection +
+                ", samplingInterval=" + samplingInterval +
+                ", releaseOnClose=" + releaseOnClose +
+                '}';
+    }
+}
@@ -0,0 +1,12 @@
+package com.github.schmittjoaopedro.tls;
+
+/**
+ * Told by {@link PacketsSniffer} when the socket of a capture session is closed, from the thread closing it. With a
+ * {@link CapturePolicy} releasing closed sessions, this is the last chance to read the capture, such as to
+ * {@link PcapngExporter#finish} it, before it is recycled.
+ */
+public interface CaptureSessionListener {
+
+    void onCaptureSessionClosed(PacketCaptureSession captureSession);
+
+}
@@ -0,0 +1,158 @@
+package com.github.schmittjoaopedro.tls;
+
+import javax.security.auth.x500.X500Principal;
+import java.security.PublicKey;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.DSAKey;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.RSAKey;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the reports need from one certificate, extracted once and shared through {@link CertificateAnalysisCache}.
+ */
+public class CertificateAnalysis {
+
+    private final String fingerprint;
+    private final String subject;
+    private final String issuer;
+    private final String signatureAlgorithm;
+    private final long notBeforeMillis;
+    private final long notAfterMillis;
+    private final String publicKeyAlgorithm;
+    private final int keySize;
+    private final List<String> subjectAlternativeNames;
+    private final boolean selfIssued;
+
+    CertificateAnalysis(String fingerprint, X509Certificate certificate) {
+        this.fingerprint = fingerprint;
+        this.subject = certificate.getSubjectX500Principal().toString();
+        this.issuer = certificate.getIssuerX500Principal().toString();
+        this.signatureAlgorithm = certificate.getSigAlgName();
+        this.notBeforeMillis = certificate.getNotBefore().getTime();
+        this.notAfterMillis = certificate.getNotAfter().getTime();
+        this.publicKeyAlgorithm = certificate.getPublicKey().getAlgorithm();
+        this.keySize = keySize(certificate.getPublicKey());
+        this.subjectAlternativeNames = subjectAlternativeNames(certificate);
+        X500Principal subjectPrincipal = certificate.getSubjectX500Principal();
+        this.selfIssued = subjectPrincipal.equals(certificate.getIssuerX500Principal());
+    }
+
+    /**
+     * @return the hex SHA-256 digest of the DER encoding
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getIssuer() {
+        return issuer;
+    }
+
+    public String getSignatureAlgorithm() {
+        return signatureAlgorithm;
+    }
+
+    public Date getNotBefore() {
+        return new Date(notBeforeMillis);
+    }
+
+    public Date getNotAfter() {
+        return new Date(notAfterMillis);
+    }
+
+    public String getPublicKeyAlgorithm() {
+        return publicKeyAlgorithm;
+    }
+
+    /**
+     * @return the modulus size for RSA and DSA, the order size for EC, -1 for other key types
+     */
+    public int getKeySize() {
+        return keySize;
+    }
+
+    /**
+     * @return entries such as {@code DNS:example.com} or {@code IP:127.0.0.1}
+     */
+    public List<String> getSubjectAlternativeNames() {
+        return subjectAlternativeNames;
+    }
+
+    public boolean isSelfIssued() {
+        return selfIssued;
+    }
+
+    /**
+     * @return whole days until notAfter, negative once expired
+     */
+    public long getDaysToExpiry(long nowMillis) {
+        return Math.floorDiv(notAfterMillis - nowMillis, TimeUnit.DAYS.toMillis(1));
+    }
+
+    public long getDaysToExpiry() {
+        return getDaysToExpiry(System.currentTimeMillis());
+    }
+
+    private static int keySize(PublicKey publicKey) {
+        if (publicKey instanceof RSAKey) {
+            return ((RSAKey) publicKey).getModulus().bitLength();
+        }
+        if (publicKey instanceof ECKey) {
+            return ((ECKey) publicKey).getParams().getOrder().bitLength();
+        }
+        if (publicKey instanceof DSAKey && ((DSAKey) publicKey).getParams() != null) {
+            return ((DSAKey) publicKey).getParams().getP().bitLength();
+        }
+        return -1;
+    }
+
+    private static List<String> subjectAlternativeNames(X509Certificate certificate) {
+        Collection<List<?>> alternativeNames;
+        try {
+            alternativeNames = certificate.getSubjectAlternativeNames();
+        } catch (CertificateParsingException ex) {
+            return Collections.emptyList();
+        }
+        if (alternativeNames == null) {
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<>(alternativeNames.size());
+        for (List<?> alternativeName : alternativeNames) {
+            Object value = alternativeName.get(1);
+            if (value instanceof String) {
+                names.add(generalNameType((Integer) alternativeName.get(0)) + ":" + value);
+            }
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    private static String generalNameType(int type) {
+        switch (type) {
+            case 1:
+                return "email";
+            case 2:
+                return "DNS";
+            case 4:
+                return "DirName";
+            case 6:
+                return "URI";
+            case 7:
+                return "IP";
+            case 8:
+                return "RID";
+            default:
+                return "type" + type;
+        }
+    }
+}
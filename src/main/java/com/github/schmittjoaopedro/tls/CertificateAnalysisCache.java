@@ -0,0 +1,235 @@
+package com.github.schmittjoaopedro.tls;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.cert.CertPath;
+import java.security.cert.CertPathValidator;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * LRU cache of certificate analyses keyed by SHA-256 fingerprint, with a time to live, so a sweep over many endpoints
+ * that present the same intermediates parses each distinct certificate once. Chain validations are cached the same
+ * way, keyed by the fingerprints of the whole chain; the TTL bounds how stale their validity dates can get.
+ * <p>
+ * Validation is PKIX over the presented chain, anchored at its topmost certificate: signatures, validity dates,
+ * issuer names and CA constraints, plus the self-signature of a self-issued top. Whether that top is trusted is decided
+ * by the trust manager during the handshake. Hits and misses count certificates.
+ */
+public class CertificateAnalysisCache {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, CachedValue<CertificateAnalysis>> certificates;
+    private final LinkedHashMap<String, CachedValue<CertificateChainAnalysis>> chains;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CertificateAnalysisCache(final int maxSize, final long ttlMillis) {
+        this(maxSize, ttlMillis, System::currentTimeMillis);
+    }
+
+    CertificateAnalysisCache(final int maxSize, final long ttlMillis, final LongSupplier clock) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        if (ttlMillis < 1) {
+            throw new IllegalArgumentException("TTL must be positive: " + ttlMillis);
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.certificates = newLruMap();
+        this.chains = newLruMap();
+    }
+
+    private <V> LinkedHashMap<String, CachedValue<V>> newLruMap() {
+        return new LinkedHashMap<String, CachedValue<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedValue<V>> eldest) {
+                if (size() > CertificateAnalysisCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param chain as returned by {@code SSLSession.getPeerCertificates()}, leaf first; non-X.509 entries are skipped
+     */
+    public CertificateChainAnalysis analyze(Certificate[] chain) throws GeneralSecurityException {
+        List<X509Certificate> x509Chain = new ArrayList<>(chain.length);
+        List<String> fingerprints = new ArrayList<>(chain.length);
+        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+        for (Certificate certificate : chain) {
+            if (certificate instanceof X509Certificate) {
+                x509Chain.add((X509Certificate) certificate);
+                fingerprints.add(ConversionUtils.byteArrayToHex(messageDigest.digest(certificate.getEncoded())));
+            }
+        }
+        String chainKey = String.join(":", fingerprints);
+        long now = clock.getAsLong();
+        synchronized (this) {
+            CachedValue<CertificateChainAnalysis> chainEntry = chains.get(chainKey);
+            if (chainEntry != null && !chainEntry.isExpired(now)) {
+                hits.addAndGet(fingerprints.size());
+                touchCertificates(chainEntry, now);
+                return chainEntry.value;
+            }
+        }
+        List<CertificateAnalysis> analyses = new ArrayList<>(x509Chain.size());
+        for (int i = 0; i < x509Chain.size(); i++) {
+            analyses.add(getCertificateAnalysis(fingerprints.get(i), x509Chain.get(i), now));
+        }
+        // validated outside the lock, concurrent misses on one chain at worst validate it twice
+        CertificateChainAnalysis chainAnalysis = new CertificateChainAnalysis(analyses, validate(x509Chain, now));
+        synchronized (this) {
+            chains.put(chainKey, new CachedValue<>(chainAnalysis, now + ttlMillis));
+        }
+        return chainAnalysis;
+    }
+
+    /**
+     * Keeps the certificates of a chain served from the cache recently used, putting back the ones evicted meanwhile,
+     * so the most requested certificates are the last ones to leave the expiry report.
+     */
+    private void touchCertificates(CachedValue<CertificateChainAnalysis> chainEntry, long now) {
+        for (CertificateAnalysis analysis : chainEntry.value.getCertificates()) {
+            CachedValue<CertificateAnalysis> entry = certificates.get(analysis.getFingerprint());
+            if (entry == null || entry.isExpired(now)) {
+                certificates.put(analysis.getFingerprint(), new CachedValue<>(analysis, chainEntry.expiresAtMillis));
+            }
+        }
+    }
+
+    private synchronized CertificateAnalysis getCertificateAnalysis(String fingerprint, X509Certificate certificate, long now) {
+        CachedValue<CertificateAnalysis> entry = certificates.get(fingerprint);
+        if (entry != null && !entry.isExpired(now)) {
+            hits.incrementAndGet();
+            return entry.value;
+        }
+        misses.incrementAndGet();
+        CertificateAnalysis analysis = new CertificateAnalysis(fingerprint, certificate);
+        certificates.put(fingerprint, new CachedValue<>(analysis, now + ttlMillis));
+        return analysis;
+    }
+
+    /**
+     * @return null when the chain validates, the reason otherwise
+     */
+    private String validate(List<X509Certificate> chain, long now) {
+        if (chain.isEmpty()) {
+            return "Empty certificate chain";
+        }
+        Date date = new Date(now);
+        try {
+            for (X509Certificate certificate : chain) {
+                certificate.checkValidity(date);
+            }
+            // servers usually leave the root out, so the top of what was sent is the anchor
+            X509Certificate top = chain.get(chain.size() - 1);
+            if (top.getSubjectX500Principal().equals(top.getIssuerX500Principal())) {
+                top.verify(top.getPublicKey());
+            }
+            List<X509Certificate> path = chain.subList(0, chain.size() - 1);
+            if (path.isEmpty()) {
+                return null;
+            }
+            CertPath certPath = CertificateFactory.getInstance("X.509").generateCertPath(path);
+            PKIXParameters parameters = new PKIXParameters(Collections.singleton(new TrustAnchor(top, null)));
+            parameters.setRevocationEnabled(false);
+            parameters.setDate(date);
+            CertPathValidator.getInstance("PKIX").validate(certPath, parameters);
+            return null;
+        } catch (GeneralSecurityException ex) {
+            return ex.getMessage();
+        }
+    }
+
+    /**
+     * @return the live cached certificates, those of live cached chains included, that expire within {@code days},
+     * soonest first
+     */
+    public List<CertificateAnalysis> getCertificatesExpiringWithin(int days) {
+        long now = clock.getAsLong();
+        Map<String, CertificateAnalysis> live = new LinkedHashMap<>();
+        synchronized (this) {
+            for (CachedValue<CertificateAnalysis> entry : certificates.values()) {
+                if (!entry.isExpired(now)) {
+                    live.put(entry.value.getFingerprint(), entry.value);
+                }
+            }
+            for (CachedValue<CertificateChainAnalysis> chainEntry : chains.values()) {
+                if (!chainEntry.isExpired(now)) {
+                    for (CertificateAnalysis analysis : chainEntry.value.getCertificates()) {
+                        live.putIfAbsent(analysis.getFingerprint(), analysis);
+                    }
+                }
+            }
+        }
+        List<CertificateAnalysis> expiring = new ArrayList<>();
+        for (CertificateAnalysis analysis : live.values()) {
+            if (analysis.getDaysToExpiry(now) < days) {
+                expiring.add(analysis);
+            }
+        }
+        expiring.sort(Comparator.comparing(CertificateAnalysis::getNotAfter));
+        return expiring;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the number of cached certificates, expired entries included until they are evicted or replaced
+     */
+    public synchronized int size() {
+        return certificates.size();
+    }
+
+    public synchronized void clear() {
+        certificates.clear();
+        chains.clear();
+    }
+
+    private static class CachedValue<V> {
+
+        private final V value;
+        private final long expiresAtMillis;
+
+        private CachedValue(V value, long expiresAtMillis) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        private boolean isExpired(long nowMillis) {
+            return nowMillis >= expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.schmittjoaopedro.tls;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Analysis of the chain a server presented, leaf first, and whether it validates.
+ */
+public class CertificateChainAnalysis {
+
+    private final List<CertificateAnalysis> certificates;
+    private final String validationError;
+
+    CertificateChainAnalysis(List<CertificateAnalysis> certificates, String validationError) {
+        this.certificates = Collections.unmodifiableList(certificates);
+        this.validationError = validationError;
+    }
+
+    public List<CertificateAnalysis> getCertificates() {
+        return certificates;
+    }
+
+    /**
+     * @return the server certificate, or null for an empty chain
+     */
+    public CertificateAnalysis getLeaf() {
+        return certificates.isEmpty() ? null : certificates.get(0);
+    }
+
+    public boolean isValid() {
+        return validationError == null;
+    }
+
+    /**
+     * @return why validation failed, null when it didn't
+     */
+    public String getValidationError() {
+        return validationError;
+    }
+
+    /**
+     * @return days until the first certificate of the chain expires, {@link Long#MAX_VALUE} for an empty chain
+     */
+    public long getDaysToExpiry(long nowMillis) {
+        long days = Long.MAX_VALUE;
+        for (CertificateAnalysis certificate : certificates) {
+            days = Math.min(days, certificate.getDaysToExpiry(nowMillis));
+        }
+        return days;
+    }
+}
@@ -0,0 +1,105 @@
+package com.github.schmittjoaopedro.tls;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Protocol × cipher-suite matrix of one endpoint, as found by {@link CipherSuiteScanner}.
+ */
+public class CipherSuiteScanReport {
+
+    private final String target;
+    private final Map<String, ProbeOutcome> protocolOutcomes = new LinkedHashMap<>();
+    private final Map<String, Map<String, ProbeOutcome>> cipherSuiteOutcomes = new LinkedHashMap<>();
+    private int probesCount;
+    private long elapsedNanos;
+
+    CipherSuiteScanReport(String target) {
+        this.target = target;
+    }
+
+    synchronized void recordProtocol(String protocol, ProbeOutcome outcome) {
+        protocolOutcomes.put(protocol, outcome);
+        cipherSuiteOutcomes.put(protocol, new LinkedHashMap<>());
+        probesCount++;
+    }
+
+    synchronized void recordCipherSuite(String protocol, String cipherSuite, ProbeOutcome outcome, boolean probed) {
+        cipherSuiteOutcomes.get(protocol).put(cipherSuite, outcome);
+        if (probed) {
+            probesCount++;
+        }
+    }
+
+    synchronized void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public synchronized List<String> getProtocols() {
+        return new ArrayList<>(protocolOutcomes.keySet());
+    }
+
+    public synchronized ProbeOutcome getProtocolOutcome(String protocol) {
+        return protocolOutcomes.get(protocol);
+    }
+
+    public synchronized Map<String, ProbeOutcome> getCipherSuiteOutcomes(String protocol) {
+        Map<String, ProbeOutcome> outcomes = cipherSuiteOutcomes.get(protocol);
+        return outcomes != null ? new LinkedHashMap<>(outcomes) : Collections.emptyMap();
+    }
+
+    public synchronized List<String> getAcceptedCipherSuites(String protocol) {
+        List<String> accepted = new ArrayList<>();
+        for (Map.Entry<String, ProbeOutcome> outcome : getCipherSuiteOutcomes(protocol).entrySet()) {
+            if (outcome.getValue() == ProbeOutcome.ACCEPTED) {
+                accepted.add(outcome.getKey());
+            }
+        }
+        return accepted;
+    }
+
+    public synchronized int getProbesCount() {
+        return probesCount;
+    }
+
+    public synchronized long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public synchronized void appendTo(Appendable out) throws IOException {
+        out.append("---------------------------\n");
+        out.append("TLS protocol and cipher suite scan\n");
+        out.append("Target: " + target + "\n");
+        out.append("Probes: " + probesCount + " in " + HandshakeLatencyStats.millis(elapsedNanos) + " ms\n");
+        for (Map.Entry<String, ProbeOutcome> protocol : protocolOutcomes.entrySet()) {
+            out.append(protocol.getKey() + ": " + protocol.getValue().getDisplayName() + "\n");
+            if (protocol.getValue() != ProbeOutcome.ACCEPTED) {
+                continue;
+            }
+            for (Map.Entry<String, ProbeOutcome> cipherSuite : cipherSuiteOutcomes.get(protocol.getKey()).entrySet()) {
+                out.append("\t" + cipherSuite.getKey() + ": " + cipherSuite.getValue().getDisplayName() + "\n");
+            }
+        }
+        out.append("\n");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        try {
+            appendTo(report);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return report.toString();
+    }
+}
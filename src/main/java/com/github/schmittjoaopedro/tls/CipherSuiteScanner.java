@@ -0,0 +1,229 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.apache.http.HttpHost;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Finds which protocols and cipher suites an endpoint accepts. Every protocol the JVM supports is first probed with
+ * all of its suites; protocols the server rejects are pruned, the suites of the others are then probed one by one.
+ * Probes run concurrently, capped per host, and each connection is dropped as soon as the ServerHello or an alert
+ * arrives, so no certificate validation or HTTP exchange takes place.
+ */
+public class CipherSuiteScanner {
+
+    private final TLSSnifferService snifferService;
+    private final int maxConcurrentProbesPerHost;
+    private final int timeoutMillis;
+    // entries live only while a probe of the host holds or waits for a permit
+    private final Map<String, HostPermits> hostPermits = new ConcurrentHashMap<>();
+
+    public CipherSuiteScanner(TLSSnifferService snifferService, int maxConcurrentProbesPerHost, int timeoutMillis) {
+        if (maxConcurrentProbesPerHost < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + maxConcurrentProbesPerHost);
+        }
+        this.snifferService = snifferService;
+        this.maxConcurrentProbesPerHost = maxConcurrentProbesPerHost;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public CipherSuiteScanReport scan(String url) throws GeneralSecurityException, IOException, InterruptedException {
+        long start = System.nanoTime();
+        URI uri = URI.create(url);
+        HttpHost host = new HttpHost(uri.getHost(), uri.getPort() > 0 ? uri.getPort() : 443, "https");
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getByName(host.getHostName()), host.getPort());
+        SSLContext sslContext = snifferService.getSSLContext(null);
+        Map<String, List<String>> cipherSuitesByProtocol = groupCipherSuites(sslContext);
+        CipherSuiteScanReport report = new CipherSuiteScanReport(host.toHostString());
+        ExecutorService executor = AnalysisExecutors.newExecutor("tls-scan", maxConcurrentProbesPerHost);
+        try {
+            Map<String, Future<ProbeOutcome>> protocolProbes = new LinkedHashMap<>();
+            for (Map.Entry<String, List<String>> protocol : cipherSuitesByProtocol.entrySet()) {
+                String[] cipherSuites = protocol.getValue().toArray(new String[0]);
+                protocolProbes.put(protocol.getKey(), executor.submit(
+                        limited(host.toHostString(), () -> probe(host, address, sslContext, protocol.getKey(), cipherSuites))));
+            }
+            Map<String, Map<String, Future<ProbeOutcome>>> cipherSuiteProbes = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<ProbeOutcome>> protocolProbe : protocolProbes.entrySet()) {
+                String protocol = protocolProbe.getKey();
+                ProbeOutcome protocolOutcome = await(protocolProbe.getValue());
+                report.recordProtocol(protocol, protocolOutcome);
+                Map<String, Future<ProbeOutcome>> probes = new LinkedHashMap<>();
+                for (String cipherSuite : cipherSuitesByProtocol.get(protocol)) {
+                    if (protocolOutcome != ProbeOutcome.ACCEPTED) {
+                        report.recordCipherSuite(protocol, cipherSuite, ProbeOutcome.PRUNED, false);
+                    } else {
+                        probes.put(cipherSuite, executor.submit(
+                                limited(host.toHostString(), () -> probe(host, address, sslContext, protocol, new String[]{cipherSuite}))));
+                    }
+                }
+                cipherSuiteProbes.put(protocol, probes);
+            }
+            for (Map.Entry<String, Map<String, Future<ProbeOutcome>>> protocol : cipherSuiteProbes.entrySet()) {
+                for (Map.Entry<String, Future<ProbeOutcome>> cipherSuiteProbe : protocol.getValue().entrySet()) {
+                    report.recordCipherSuite(protocol.getKey(), cipherSuiteProbe.getKey(), await(cipherSuiteProbe.getValue()), true);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        report.setElapsedNanos(System.nanoTime() - start);
+        return report;
+    }
+
+    private Map<String, List<String>> groupCipherSuites(SSLContext sslContext) {
+        Map<String, List<String>> cipherSuitesByProtocol = new LinkedHashMap<>();
+        for (String protocol : sslContext.getSupportedSSLParameters().getProtocols()) {
+            if (TLSRecordParser.versionCode(protocol) < 0) {
+                continue; // SSLv2Hello is a ClientHello format, not a protocol
+            }
+            List<String> cipherSuites = new ArrayList<>();
+            for (String cipherSuite : sslContext.getSupportedSSLParameters().getCipherSuites()) {
+                if (!cipherSuite.endsWith("_SCSV") && isTLS13CipherSuite(cipherSuite) == "TLSv1.3".equals(protocol)) {
+                    cipherSuites.add(cipherSuite);
+                }
+            }
+            cipherSuitesByProtocol.put(protocol, cipherSuites);
+        }
+        return cipherSuitesByProtocol;
+    }
+
+    private static boolean isTLS13CipherSuite(String cipherSuite) {
+        // TLS 1.3 suites name only the AEAD and hash, e.g. TLS_AES_128_GCM_SHA256
+        return !cipherSuite.contains("_WITH_");
+    }
+
+    private ProbeOutcome probe(HttpHost host, InetSocketAddress address, SSLContext sslContext, String protocol, String[] cipherSuites) {
+        final PacketsSniffer packetsSniffer = new PacketsSniffer();
+        ProbeListener probeListener = new ProbeListener(packetsSniffer);
+        packetsSniffer.addRecordListener(probeListener);
+        PacketsSnifferConnectionManager connectionManager = new PacketsSnifferConnectionManager(
+                packetsSniffer, sslContext, new String[]{protocol}, cipherSuites);
+        IOException failure = null;
+        try {
+            Socket socket = connectionManager.openSecureSocket(host, address, timeoutMillis);
+            socket.close();
+        } catch (IOException ex) {
+            failure = ex;
+        } finally {
+            connectionManager.shutdown();
+            packetsSniffer.recycle();
+        }
+        return probeListener.getOutcome(TLSRecordParser.versionCode(protocol), failure);
+    }
+
+    private static ProbeOutcome await(Future<ProbeOutcome> probe) throws InterruptedException {
+        try {
+            return probe.get();
+        } catch (ExecutionException ex) {
+            return ProbeOutcome.ERROR;
+        }
+    }
+
+    private <T> Callable<T> limited(String host, Callable<T> task) {
+        return () -> {
+            HostPermits permits = hostPermits.compute(host, (key, current) -> {
+                HostPermits entry = current != null ? current : new HostPermits(maxConcurrentProbesPerHost);
+                entry.users++;
+                return entry;
+            });
+            try {
+                permits.semaphore.acquire();
+                try {
+                    return task.call();
+                } finally {
+                    permits.semaphore.release();
+                }
+            } finally {
+                hostPermits.computeIfPresent(host, (key, current) -> --current.users == 0 ? null : current);
+            }
+        };
+    }
+
+    int getTrackedHostsCount() {
+        return hostPermits.size();
+    }
+
+    /**
+     * Permits shared by the concurrent scans of a host. {@code users} is only touched inside the map's atomic
+     * compute calls.
+     */
+    private static class HostPermits {
+
+        private final Semaphore semaphore;
+        private int users;
+
+        private HostPermits(int permits) {
+            this.semaphore = new Semaphore(permits);
+        }
+    }
+
+    private static class ProbeListener implements TLSRecordListener {
+
+        private final ServerHelloCapture serverHello;
+        private volatile boolean clientHelloSent;
+        private volatile boolean alertReceived;
+
+        private ProbeListener(PacketsSniffer packetsSniffer) {
+            // the ServerHello answers the question, drop the connection right away
+            this.serverHello = new ServerHelloCapture(() -> {
+                for (PacketCaptureSession captureSession : packetsSniffer.getCaptureSessions()) {
+                    captureSession.requestAbort();
+                }
+            });
+        }
+
+        @Override
+        public void onHandshakeMessage(boolean output, int handshakeType, int length) {
+            if (output && handshakeType == TLSHandshakeType.CLIENT_HELLO.getCode()) {
+                clientHelloSent = true;
+            }
+            serverHello.onHandshakeMessage(output, handshakeType, length);
+        }
+
+        @Override
+        public void onHandshakeBody(boolean output, int handshakeType, byte[] b, int off, int len) {
+            serverHello.onHandshakeBody(output, handshakeType, b, off, len);
+        }
+
+        @Override
+        public void onAlert(boolean output, int level, int description) {
+            if (!output) {
+                alertReceived = true;
+            }
+        }
+
+        private ProbeOutcome getOutcome(int expectedVersion, IOException failure) {
+            if (serverHello.isComplete()) {
+                return serverHello.getVersion() == expectedVersion ? ProbeOutcome.ACCEPTED : ProbeOutcome.REJECTED;
+            }
+            if (alertReceived) {
+                return ProbeOutcome.REJECTED;
+            }
+            if (!clientHelloSent) {
+                // JSSE refuses locally when the protocol or suite is disabled in this JVM
+                return failure instanceof SSLException ? ProbeOutcome.CLIENT_UNSUPPORTED : ProbeOutcome.ERROR;
+            }
+            // some servers just close the connection instead of sending an alert
+            return failure instanceof SocketTimeoutException ? ProbeOutcome.ERROR : ProbeOutcome.REJECTED;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.github.schmittjoaopedro.tls;
+
+import javax.net.ssl.SSLSession;
+import java.net.SocketAddress;
+
+import static com.github.schmittjoaopedro.tls.ConversionUtils.byteArrayToHex;
+
+/**
+ * One connection of an {@link AnalysisResult}: its negotiated TLS session, when the handshake got that far, the
+ * server chain, the handshake timings and, for analyses logging the handshake, the decoded records and the packets.
+ */
+public class ConnectionResult {
+
+    private final long id;
+    private final SocketAddress remoteAddress;
+    private final boolean captureTruncated;
+    private final boolean sessionEstablished;
+    private final String peerHost;
+    private final int peerPort;
+    private final String protocol;
+    private final String sessionId;
+    private final String cipherSuite;
+    private final CertificateChainAnalysis certificateChain;
+    private final String certificateError;
+    private final HandshakeTimings handshakeTimings;
+    private final String recordLog;
+    private PacketCaptureSession packets;
+
+    /**
+     * @param keepPackets whether the result takes over the capture, which {@link AnalysisResult#release()} recycles
+     */
+    ConnectionResult(PacketCaptureSession captureSession, CertificateAnalysisCache certificateAnalysisCache, boolean keepPackets) {
+        this.id = captureSession.getId();
+        this.remoteAddress = captureSession.getRemoteAddress();
+        this.captureTruncated = captureSession.isCaptureTruncated();
+        this.handshakeTimings = captureSession.getHandshakeTimings();
+        TLSRecordLog records = captureSession.getRecordLog();
+        this.recordLog = keepPackets && records != null ? records.getLog() : null;
+        this.packets = keepPackets ? captureSession : null;
+
+        // the SSLContext is shared through the cache, so its session cache also holds sessions of other analyses
+        SSLSession sslSession = captureSession.getSSLSession();
+        this.sessionEstablished = sslSession != null;
+        CertificateChainAnalysis chain = null;
+        String chainError = null;
+        if (sslSession != null) {
+            this.peerHost = sslSession.getPeerHost();
+            this.peerPort = sslSession.getPeerPort();
+            this.protocol = sslSession.getProtocol();
+            this.sessionId = byteArrayToHex(sslSession.getId());
+            this.cipherSuite = sslSession.getCipherSuite();
+            try {
+                chain = certificateAnalysisCache.analyze(sslSession.getPeerCertificates());
+            } catch (Exception ex) {
+                chainError = ex.getMessage();
+            }
+        } else {
+            this.peerHost = null;
+            this.peerPort = -1;
+            this.protocol = null;
+            this.sessionId = null;
+            this.cipherSuite = null;
+        }
+        this.certificateChain = chain;
+        this.certificateError = chainError;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public SocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public boolean isCaptureTruncated() {
+        return captureTruncated;
+    }
+
+    /**
+     * @return whether the handshake completed; the session fields are null otherwise
+     */
+    public boolean isSessionEstablished() {
+        return sessionEstablished;
+    }
+
+    public String getPeerHost() {
+        return peerHost;
+    }
+
+    public int getPeerPort() {
+        return peerPort;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * @return the session ID in hex
+     */
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public String getCipherSuite() {
+        return cipherSuite;
+    }
+
+    /**
+     * @return the analysis of the server chain, null without a session or when the chain couldn't be read
+     */
+    public CertificateChainAnalysis getCertificateChain() {
+        return certificateChain;
+    }
+
+    /**
+     * @return why the chain couldn't be read, null when it could
+     */
+    public String getCertificateError() {
+        return certificateError;
+    }
+
+    public HandshakeTimings getHandshakeTimings() {
+        return handshakeTimings;
+    }
+
+    /**
+     * @return the decoded records, null unless the analysis logged the handshake
+     */
+    public String getRecordLog() {
+        return recordLog;
+    }
+
+    /**
+     * @return the captured packets, null unless the analysis logged the handshake or once the result is released
+     */
+    public PacketCaptureBuffer getCaptureBuffer() {
+        return packets != null ? packets.getCaptureBuffer() : null;
+    }
+
+    PacketCaptureSession getPackets() {
+        return packets;
+    }
+
+    void releasePackets() {
+        if (packets != null) {
+            packets.recycle();
+            packets = null;
+        }
+    }
+}
@@ -1,12 +1,53 @@
 package com.github.schmittjoaopedro.tls;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
 public class ConversionUtils {
 
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int HEX_SCRATCH_LENGTH = 1024;
+
     static String byteArrayToHex(byte[] a) {
-        StringBuilder sb = new StringBuilder(a.length * 2);
-        for (byte b : a)
-            sb.append(String.format("%02x", b));
-        return sb.toString();
+        char[] hex = new char[a.length * 2];
+        for (int i = 0; i < a.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(a[i] >> 4) & 0x0f];
+            hex[i * 2 + 1] = HEX_DIGITS[a[i] & 0x0f];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Writes bytes {@code from} (inclusive) to {@code to} (exclusive) of {@code src} as hex, without touching its
+     * position. Characters go out through a small scratch array, so the cost is constant whatever the range size.
+     */
+    static void appendHex(Appendable out, ByteBuffer src, int from, int to) throws IOException {
+        char[] scratch = new char[Math.min(HEX_SCRATCH_LENGTH, (to - from) * 2)];
+        int scratchPosition = 0;
+        for (int i = from; i < to; i++) {
+            byte b = src.get(i);
+            scratch[scratchPosition++] = HEX_DIGITS[(b >> 4) & 0x0f];
+            scratch[scratchPosition++] = HEX_DIGITS[b & 0x0f];
+            if (scratchPosition == scratch.length) {
+                flushHex(out, scratch, scratchPosition);
+                scratchPosition = 0;
+            }
+        }
+        if (scratchPosition > 0) {
+            flushHex(out, scratch, scratchPosition);
+        }
+    }
+
+    private static void flushHex(Appendable out, char[] scratch, int len) throws IOException {
+        if (out instanceof Writer) {
+            ((Writer) out).write(scratch, 0, len);
+        } else if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(scratch, 0, len);
+        } else {
+            out.append(CharBuffer.wrap(scratch, 0, len));
+        }
     }
 
 }
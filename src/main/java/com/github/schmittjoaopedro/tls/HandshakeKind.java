@@ -0,0 +1,18 @@
+package com.github.schmittjoaopedro.tls;
+
+public enum HandshakeKind {
+
+    FULL("Full"),
+    RESUMED("Resumed"),
+    FAILED("Failed");
+
+    private final String displayName;
+
+    HandshakeKind(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
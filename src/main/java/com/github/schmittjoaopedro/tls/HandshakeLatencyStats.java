@@ -0,0 +1,80 @@
+package com.github.schmittjoaopedro.tls;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-target, per-phase {@link LatencyHistogram}s aggregated over many analyses. Recording is lock-free; the export is
+ * a CSV with one line per target and phase.
+ */
+public class HandshakeLatencyStats {
+
+    private final Map<String, LatencyHistogram[]> histograms = new ConcurrentHashMap<>();
+
+    public void record(String target, HandshakeTimings timings) {
+        LatencyHistogram[] targetHistograms = histograms.computeIfAbsent(target, key -> newHistograms());
+        for (HandshakePhase phase : HandshakePhase.values()) {
+            if (timings.isAvailable(phase)) {
+                targetHistograms[phase.ordinal()].record(timings.getDurationNanos(phase));
+            }
+        }
+    }
+
+    public LatencyHistogram getHistogram(String target, HandshakePhase phase) {
+        LatencyHistogram[] targetHistograms = histograms.get(target);
+        return targetHistograms != null ? targetHistograms[phase.ordinal()] : null;
+    }
+
+    public List<String> getTargets() {
+        List<String> targets = new ArrayList<>(histograms.keySet());
+        Collections.sort(targets);
+        return targets;
+    }
+
+    public void exportCsv(Appendable out) throws IOException {
+        out.append("target,phase,count,mean_ms,p50_ms,p90_ms,p99_ms,max_ms\n");
+        for (String target : getTargets()) {
+            LatencyHistogram[] targetHistograms = histograms.get(target);
+            for (HandshakePhase phase : HandshakePhase.values()) {
+                LatencyHistogram histogram = targetHistograms[phase.ordinal()];
+                if (histogram.getCount() == 0) {
+                    continue;
+                }
+                out.append(csvField(target)).append(',').append(phase.name()).append(',')
+                        .append(Long.toString(histogram.getCount())).append(',')
+                        .append(millis(histogram.getMeanNanos())).append(',')
+                        .append(millis(histogram.getPercentileNanos(50))).append(',')
+                        .append(millis(histogram.getPercentileNanos(90))).append(',')
+                        .append(millis(histogram.getPercentileNanos(99))).append(',')
+                        .append(millis(histogram.getMaxNanos())).append('\n');
+            }
+        }
+    }
+
+    /**
+     * Quotes the field as RFC 4180 requires when it holds a comma, a quote or a line break, doubling inner quotes.
+     */
+    static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\r') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    static String millis(double nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+    private static LatencyHistogram[] newHistograms() {
+        LatencyHistogram[] targetHistograms = new LatencyHistogram[HandshakePhase.values().length];
+        for (int i = 0; i < targetHistograms.length; i++) {
+            targetHistograms[i] = new LatencyHistogram();
+        }
+        return targetHistograms;
+    }
+}
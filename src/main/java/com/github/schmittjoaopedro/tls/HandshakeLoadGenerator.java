@@ -0,0 +1,216 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Opens handshake-only connections to one endpoint from {@code concurrency} workers for a fixed duration, through
+ * {@link PacketsSnifferConnectionManager} or through a plain HttpClient socket factory, to measure what sniffing
+ * costs in throughput, latency, client CPU and allocations. Every session is invalidated after its handshake, so all
+ * handshakes are full ones.
+ * <p>
+ * With a target rate the load is open-loop: handshakes are scheduled at fixed intervals and latency is measured from
+ * the scheduled start, so a saturated client shows up as growing latency instead of silently lowering the rate.
+ * Without one, every worker starts its next handshake as soon as the previous one ends.
+ */
+public class HandshakeLoadGenerator {
+
+    private final TLSSnifferService snifferService;
+    private final int concurrency;
+    private final int targetRatePerSecond;
+    private final int timeoutMillis;
+
+    /**
+     * @param targetRatePerSecond handshakes per second over all workers, 0 for as many as the workers can do
+     */
+    public HandshakeLoadGenerator(TLSSnifferService snifferService, int concurrency, int targetRatePerSecond, int timeoutMillis) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        if (targetRatePerSecond < 0) {
+            throw new IllegalArgumentException("targetRatePerSecond must not be negative");
+        }
+        this.snifferService = snifferService;
+        this.concurrency = concurrency;
+        this.targetRatePerSecond = targetRatePerSecond;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public HandshakeLoadReport run(String url, String protocol, String cipher, boolean sniffing, long durationMillis)
+            throws GeneralSecurityException, IOException, InterruptedException {
+        URI uri = URI.create(url);
+        HttpHost host = new HttpHost(uri.getHost(), uri.getPort() > 0 ? uri.getPort() : 443, "https");
+        InetSocketAddress remoteAddress = new InetSocketAddress(host.getHostName(), host.getPort());
+        SSLContext sslContext = snifferService.newSSLContext(protocol);
+        String[] protocols = StringUtils.isBlank(protocol) ? null : new String[]{protocol};
+        String[] ciphers = StringUtils.isBlank(cipher) ? null : new String[]{cipher};
+
+        HandshakeLoadReport report = new HandshakeLoadReport(host.toHostString(), sniffing, concurrency, targetRatePerSecond);
+        long intervalNanos = targetRatePerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / targetRatePerSecond : 0;
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        AtomicLong nextStartNanos = new AtomicLong(startNanos);
+
+        // platform threads, per-thread CPU and allocation counters are not available for virtual threads
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "tls-load-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Void>> workers = new ArrayList<>(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                workers.add(executor.submit(() -> {
+                    runWorker(report, host, remoteAddress, sslContext, protocols, ciphers, sniffing,
+                            intervalNanos, nextStartNanos, deadlineNanos);
+                    return null;
+                }));
+            }
+            for (Future<Void> worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException ex) {
+                    throw new IllegalStateException("Load worker failed", ex.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        report.setElapsedNanos(System.nanoTime() - startNanos);
+        return report;
+    }
+
+    private void runWorker(HandshakeLoadReport report, HttpHost host, InetSocketAddress remoteAddress,
+                           SSLContext sslContext, String[] protocols, String[] ciphers, boolean sniffing,
+                           long intervalNanos, AtomicLong nextStartNanos, long deadlineNanos) {
+        PacketsSniffer packetsSniffer = sniffing ? new PacketsSniffer() : null;
+        PacketsSnifferConnectionManager connectionManager = sniffing
+                ? new PacketsSnifferConnectionManager(packetsSniffer, sslContext, protocols, ciphers)
+                : null;
+        SSLConnectionSocketFactory plainSocketFactory = sniffing ? null
+                : new SSLConnectionSocketFactory(sslContext, protocols, ciphers, SSLConnectionSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER);
+        ResourceMeter resourceMeter = new ResourceMeter();
+        try {
+            while (true) {
+                long startNanos;
+                if (intervalNanos > 0) {
+                    startNanos = nextStartNanos.getAndAdd(intervalNanos);
+                    if (startNanos >= deadlineNanos) {
+                        break;
+                    }
+                    long waitNanos;
+                    while ((waitNanos = startNanos - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(waitNanos);
+                    }
+                } else {
+                    startNanos = System.nanoTime();
+                    if (startNanos >= deadlineNanos) {
+                        break;
+                    }
+                }
+                boolean success = sniffing
+                        ? handshake(connectionManager, host, remoteAddress)
+                        : handshake(plainSocketFactory, host, remoteAddress);
+                report.record(success, System.nanoTime() - startNanos);
+                if (sniffing) {
+                    packetsSniffer.recycle();
+                }
+            }
+        } finally {
+            report.addResources(resourceMeter.getCpuNanos(), resourceMeter.getAllocatedBytes());
+            if (connectionManager != null) {
+                connectionManager.shutdown();
+            }
+        }
+    }
+
+    private boolean handshake(PacketsSnifferConnectionManager connectionManager, HttpHost host, InetSocketAddress remoteAddress) {
+        try {
+            close(connectionManager.openSecureSocket(host, remoteAddress, timeoutMillis));
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private boolean handshake(SSLConnectionSocketFactory socketFactory, HttpHost host, InetSocketAddress remoteAddress) {
+        HttpContext context = HttpClientContext.create();
+        try {
+            Socket socket = socketFactory.createSocket(context);
+            try {
+                socket.setSoTimeout(timeoutMillis);
+                socket = socketFactory.connectSocket(timeoutMillis, socket, host, remoteAddress, null, context);
+            } finally {
+                close(socket);
+            }
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private void close(Socket socket) throws IOException {
+        if (socket instanceof SSLSocket) {
+            // keeps the next handshake a full one
+            ((SSLSocket) socket).getSession().invalidate();
+        }
+        socket.close();
+    }
+
+    /**
+     * CPU time and allocated bytes of the calling thread since construction, -1 when the JVM can't tell.
+     */
+    private static class ResourceMeter {
+
+        private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        private final long threadId = Thread.currentThread().getId();
+        private final long cpuStart = getCpuTime();
+        private final long allocatedStart = getAllocatedBytesTotal();
+
+        long getCpuNanos() {
+            return cpuStart < 0 ? -1 : getCpuTime() - cpuStart;
+        }
+
+        long getAllocatedBytes() {
+            return allocatedStart < 0 ? -1 : getAllocatedBytesTotal() - allocatedStart;
+        }
+
+        private long getCpuTime() {
+            return threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : -1;
+        }
+
+        private long getAllocatedBytesTotal() {
+            if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+                if (allocationMXBean.isThreadAllocatedMemorySupported() && allocationMXBean.isThreadAllocatedMemoryEnabled()) {
+                    return allocationMXBean.getThreadAllocatedBytes(threadId);
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.github.schmittjoaopedro.tls;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Outcome of a {@link HandshakeLoadGenerator} run: handshake throughput and latency, plus the CPU time and heap
+ * allocations of the client workers. Resource figures are -1 when the JVM doesn't measure them.
+ */
+public class HandshakeLoadReport {
+
+    private final String target;
+    private final boolean sniffing;
+    private final int concurrency;
+    private final int targetRatePerSecond;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong cpuNanos = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+    private volatile long elapsedNanos;
+
+    HandshakeLoadReport(String target, boolean sniffing, int concurrency, int targetRatePerSecond) {
+        this.target = target;
+        this.sniffing = sniffing;
+        this.concurrency = concurrency;
+        this.targetRatePerSecond = targetRatePerSecond;
+    }
+
+    void record(boolean success, long latencyNanos) {
+        if (success) {
+            latency.record(latencyNanos);
+        } else {
+            failures.incrementAndGet();
+        }
+    }
+
+    void addResources(long workerCpuNanos, long workerAllocatedBytes) {
+        accumulate(cpuNanos, workerCpuNanos);
+        accumulate(allocatedBytes, workerAllocatedBytes);
+    }
+
+    private static void accumulate(AtomicLong total, long value) {
+        // once a worker can't measure, the total is unknown
+        total.accumulateAndGet(value, (current, added) -> current < 0 || added < 0 ? -1 : current + added);
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public boolean isSniffing() {
+        return sniffing;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getTargetRatePerSecond() {
+        return targetRatePerSecond;
+    }
+
+    public long getHandshakes() {
+        return latency.getCount();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return successful handshakes per second
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : getHandshakes() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos.get();
+    }
+
+    public double getCpuNanosPerHandshake() {
+        return perHandshake(getCpuNanos());
+    }
+
+    /**
+     * @return client CPU time over wall time, 1 being one core fully busy
+     */
+    public double getCpuUtilization() {
+        return getCpuNanos() < 0 || elapsedNanos == 0 ? -1 : (double) getCpuNanos() / elapsedNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    public double getAllocatedBytesPerHandshake() {
+        return perHandshake(getAllocatedBytes());
+    }
+
+    /**
+     * @return allocated bytes per second
+     */
+    public double getAllocationRate() {
+        return getAllocatedBytes() < 0 || elapsedNanos == 0 ? -1
+                : getAllocatedBytes() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    private double perHandshake(long total) {
+        long attempts = getHandshakes() + getFailures();
+        return total < 0 ? -1 : attempts == 0 ? 0 : (double) total / attempts;
+    }
+
+    public void appendTo(Appendable out) throws IOException {
+        out.append("---------------------------\n");
+        out.append("TLS handshake load, sniffing " + (sniffing ? "on" : "off") + "\n");
+        out.append("Target: " + target + "\n");
+        out.append("Concurrency: " + concurrency + ", target rate: "
+                + (targetRatePerSecond > 0 ? targetRatePerSecond + "/s" : "unbounded") + "\n");
+        out.append("Duration: " + HandshakeLatencyStats.millis(elapsedNanos) + " ms\n");
+        out.append("Handshakes: " + getHandshakes() + ", failures: " + getFailures() + "\n");
+        out.append("Throughput: " + String.format(Locale.ROOT, "%.1f", getThroughput()) + " handshakes/s\n");
+        out.append("Latency p50/p90/p99/max: " + HandshakeLatencyStats.millis(latency.getPercentileNanos(50)) + " / "
+                + HandshakeLatencyStats.millis(latency.getPercentileNanos(90)) + " / "
+                + HandshakeLatencyStats.millis(latency.getPercentileNanos(99)) + " / "
+                + HandshakeLatencyStats.millis(latency.getMaxNanos()) + " ms\n");
+        if (getCpuNanos() >= 0) {
+            out.append("Client CPU: " + HandshakeLatencyStats.millis(getCpuNanosPerHandshake()) + " ms/handshake, "
+                    + String.format(Locale.ROOT, "%.2f", getCpuUtilization()) + " cores\n");
+        }
+        if (getAllocatedBytes() >= 0) {
+            out.append("Allocations: " + Math.round(getAllocatedBytesPerHandshake()) + " bytes/handshake, "
+                    + String.format(Locale.ROOT, "%.1f", getAllocationRate() / (1024 * 1024)) + " MB/s\n");
+        }
+        out.append("\n");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        try {
+            appendTo(report);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,22 @@
+package com.github.schmittjoaopedro.tls;
+
+public enum HandshakePhase {
+
+    TCP_CONNECT("TCP connect"),
+    CLIENT_HELLO_TO_SERVER_HELLO("ClientHello to ServerHello"),
+    CERTIFICATE_TRANSFER("Certificate transfer"),
+    KEY_EXCHANGE("Key exchange"),
+    FINISHED("Finished"),
+    HANDSHAKE("Handshake"),
+    FIRST_APPLICATION_BYTE("Time to first application byte");
+
+    private final String displayName;
+
+    HandshakePhase(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
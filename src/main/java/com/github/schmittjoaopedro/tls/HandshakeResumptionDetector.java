@@ -0,0 +1,48 @@
+package com.github.schmittjoaopedro.tls;
+
+/**
+ * Tells full from abbreviated handshakes using the captured record sequence. Up to TLS 1.2 a resumed handshake has no
+ * server Certificate and the server sends ChangeCipherSpec before the client does. TLS 1.3 hides the certificate, so
+ * the ServerHello is inspected instead: a selected pre_shared_key means the session was resumed.
+ */
+class HandshakeResumptionDetector implements TLSRecordListener {
+
+    private static final int TLS13_VERSION = 0x0304;
+
+    private final ServerHelloCapture serverHello = new ServerHelloCapture();
+    private boolean certificateSeen;
+    private boolean clientChangeCipherSpecSeen;
+    private boolean serverChangeCipherSpecFirst;
+
+    @Override
+    public synchronized void onHandshakeMessage(boolean output, int handshakeType, int length) {
+        serverHello.onHandshakeMessage(output, handshakeType, length);
+        if (!output && handshakeType == TLSHandshakeType.CERTIFICATE.getCode()) {
+            certificateSeen = true;
+        }
+    }
+
+    @Override
+    public void onHandshakeBody(boolean output, int handshakeType, byte[] b, int off, int len) {
+        serverHello.onHandshakeBody(output, handshakeType, b, off, len);
+    }
+
+    @Override
+    public synchronized void onChangeCipherSpec(boolean output) {
+        if (output) {
+            clientChangeCipherSpecSeen = true;
+        } else if (!clientChangeCipherSpecSeen) {
+            serverChangeCipherSpecFirst = true;
+        }
+    }
+
+    synchronized HandshakeKind getHandshakeKind() {
+        if (!serverHello.isSeen()) {
+            return HandshakeKind.FAILED;
+        }
+        if (serverHello.getVersion() == TLS13_VERSION) {
+            return serverHello.hasExtension(ServerHelloCapture.EXTENSION_PRE_SHARED_KEY) ? HandshakeKind.RESUMED : HandshakeKind.FULL;
+        }
+        return !certificateSeen && serverChangeCipherSpecFirst ? HandshakeKind.RESUMED : HandshakeKind.FULL;
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.schmittjoaopedro.tls;
+
+import java.util.Arrays;
+
+/**
+ * Duration of each {@link HandshakePhase} of one connection, in nanoseconds. Phases that could not be observed (for
+ * instance the encrypted part of a TLS 1.3 handshake) are reported as unavailable.
+ */
+public class HandshakeTimings {
+
+    private static final long UNAVAILABLE = -1;
+
+    private final long[] durations = new long[HandshakePhase.values().length];
+
+    HandshakeTimings() {
+        Arrays.fill(durations, UNAVAILABLE);
+    }
+
+    void setDuration(HandshakePhase phase, long startNanos, long endNanos) {
+        if (startNanos != 0 && endNanos != 0 && endNanos >= startNanos) {
+            durations[phase.ordinal()] = endNanos - startNanos;
+        }
+    }
+
+    public boolean isAvailable(HandshakePhase phase) {
+        return durations[phase.ordinal()] != UNAVAILABLE;
+    }
+
+    /**
+     * @return the phase duration in nanoseconds, or -1 when the phase was not observed
+     */
+    public long getDurationNanos(HandshakePhase phase) {
+        return durations[phase.ordinal()];
+    }
+}
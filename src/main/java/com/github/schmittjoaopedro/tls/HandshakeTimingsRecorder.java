@@ -0,0 +1,84 @@
+package com.github.schmittjoaopedro.tls;
+
+/**
+ * Timestamps the handshake milestones of one connection from the decoded record events.
+ */
+class HandshakeTimingsRecorder implements TLSRecordListener {
+
+    private long clientHelloNanos;
+    private long serverHelloNanos;
+    private long certificateStartNanos;
+    private long certificateEndNanos;
+    private long serverHelloDoneNanos;
+    private long clientChangeCipherSpecNanos;
+    private long serverChangeCipherSpecNanos;
+    private long serverFinishedNanos;
+    private long firstOutputApplicationNanos;
+    private long firstInputApplicationNanos;
+
+    @Override
+    public synchronized void onRecord(boolean output, int contentType, int version, int length) {
+        if (contentType != TLSContentType.APPLICATION_DATA.getCode()) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (output && firstOutputApplicationNanos == 0) {
+            firstOutputApplicationNanos = now;
+        } else if (!output && firstOutputApplicationNanos != 0 && firstInputApplicationNanos == 0) {
+            firstInputApplicationNanos = now;
+        }
+    }
+
+    @Override
+    public synchronized void onHandshakeMessage(boolean output, int handshakeType, int length) {
+        long now = System.nanoTime();
+        if (output) {
+            if (handshakeType == TLSHandshakeType.CLIENT_HELLO.getCode() && clientHelloNanos == 0) {
+                clientHelloNanos = now;
+            }
+            return;
+        }
+        if (certificateStartNanos != 0 && certificateEndNanos == 0 && handshakeType != TLSHandshakeType.CERTIFICATE.getCode()) {
+            certificateEndNanos = now;
+        }
+        if (handshakeType == TLSHandshakeType.SERVER_HELLO.getCode() && serverHelloNanos == 0) {
+            serverHelloNanos = now;
+        } else if (handshakeType == TLSHandshakeType.CERTIFICATE.getCode() && certificateStartNanos == 0) {
+            certificateStartNanos = now;
+        } else if (handshakeType == TLSHandshakeType.SERVER_HELLO_DONE.getCode() && serverHelloDoneNanos == 0) {
+            serverHelloDoneNanos = now;
+        }
+    }
+
+    @Override
+    public synchronized void onChangeCipherSpec(boolean output) {
+        long now = System.nanoTime();
+        if (output && clientChangeCipherSpecNanos == 0) {
+            clientChangeCipherSpecNanos = now;
+        } else if (!output && serverChangeCipherSpecNanos == 0) {
+            serverChangeCipherSpecNanos = now;
+            if (certificateStartNanos != 0 && certificateEndNanos == 0) {
+                certificateEndNanos = now;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onEncryptedHandshakeMessage(boolean output, int length) {
+        if (!output && serverFinishedNanos == 0) {
+            serverFinishedNanos = System.nanoTime();
+        }
+    }
+
+    synchronized HandshakeTimings toTimings(long connectStartNanos, long connectEndNanos, long handshakeStartNanos, long handshakeEndNanos) {
+        HandshakeTimings timings = new HandshakeTimings();
+        timings.setDuration(HandshakePhase.TCP_CONNECT, connectStartNanos, connectEndNanos);
+        timings.setDuration(HandshakePhase.CLIENT_HELLO_TO_SERVER_HELLO, clientHelloNanos, serverHelloNanos);
+        timings.setDuration(HandshakePhase.CERTIFICATE_TRANSFER, certificateStartNanos, certificateEndNanos);
+        timings.setDuration(HandshakePhase.KEY_EXCHANGE, serverHelloDoneNanos, clientChangeCipherSpecNanos);
+        timings.setDuration(HandshakePhase.FINISHED, clientChangeCipherSpecNanos, serverFinishedNanos);
+        timings.setDuration(HandshakePhase.HANDSHAKE, handshakeStartNanos, handshakeEndNanos);
+        timings.setDuration(HandshakePhase.FIRST_APPLICATION_BYTE, firstOutputApplicationNanos, firstInputApplicationNanos);
+        return timings;
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.schmittjoaopedro.tls;
+
+/**
+ * What changed between two consecutive probes of a monitored target.
+ */
+public enum MonitorChange {
+
+    AVAILABILITY("Availability"),
+    PROTOCOL("Protocol"),
+    CIPHER_SUITE("Cipher suite"),
+    CERTIFICATE("Certificate"),
+    LATENCY_THRESHOLD("Latency threshold");
+
+    private final String displayName;
+
+    MonitorChange(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.schmittjoaopedro.tls;
+
+/**
+ * Receives the changes {@link TLSMonitor} detects. Calls come from {@link java.util.concurrent.ForkJoinPool#commonPool()},
+ * possibly several at once for different targets, but one at a time and in order for the same target; a slow listener
+ * holds back the other tasks of the common pool.
+ */
+public interface MonitorListener {
+
+    /**
+     * @param previous the result before the change; for everything but availability, the last successful one
+     */
+    void onChange(AnalysisTarget target, MonitorChange change, MonitorResult previous, MonitorResult current);
+
+}
@@ -0,0 +1,58 @@
+package com.github.schmittjoaopedro.tls;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves the metrics of a {@link TLSMonitor} on {@code /metrics} for Prometheus to scrape, over the HTTP server the
+ * JDK embeds. Scrapes are answered one at a time on the server's own thread.
+ */
+public class MonitorMetricsEndpoint implements Closeable {
+
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final HttpServer server;
+
+    /**
+     * @param address port 0 binds an ephemeral port, see {@link #getPort()}
+     */
+    public MonitorMetricsEndpoint(InetSocketAddress address, TLSMonitor monitor) throws IOException {
+        server = HttpServer.create(address, 0);
+        server.createContext("/metrics", exchange -> serveMetrics(exchange, monitor));
+        server.start();
+    }
+
+    private static void serveMetrics(HttpExchange exchange, TLSMonitor monitor) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            StringBuilder metrics = new StringBuilder(4096);
+            monitor.writeMetrics(metrics);
+            byte[] body = metrics.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
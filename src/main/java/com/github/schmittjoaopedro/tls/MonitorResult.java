@@ -0,0 +1,88 @@
+package com.github.schmittjoaopedro.tls;
+
+/**
+ * Outcome of the latest probe of one monitored target: what was negotiated and how long the handshake took, or why it
+ * failed. Only the fields the monitor compares and exports are kept, so tens of thousands of targets stay cheap.
+ */
+public class MonitorResult {
+
+    private final long timestampMillis;
+    private final String protocol;
+    private final String cipherSuite;
+    private final String certificateFingerprint;
+    private final long certificateDaysToExpiry;
+    private final long handshakeNanos;
+    private final String failure;
+
+    private MonitorResult(long timestampMillis, String protocol, String cipherSuite, String certificateFingerprint,
+                          long certificateDaysToExpiry, long handshakeNanos, String failure) {
+        this.timestampMillis = timestampMillis;
+        this.protocol = protocol;
+        this.cipherSuite = cipherSuite;
+        this.certificateFingerprint = certificateFingerprint;
+        this.certificateDaysToExpiry = certificateDaysToExpiry;
+        this.handshakeNanos = handshakeNanos;
+        this.failure = failure;
+    }
+
+    static MonitorResult success(long timestampMillis, String protocol, String cipherSuite, String certificateFingerprint,
+                                 long certificateDaysToExpiry, long handshakeNanos) {
+        return new MonitorResult(timestampMillis, protocol, cipherSuite, certificateFingerprint, certificateDaysToExpiry,
+                handshakeNanos, null);
+    }
+
+    static MonitorResult failure(long timestampMillis, String failure) {
+        return new MonitorResult(timestampMillis, null, null, null, Long.MAX_VALUE, -1, failure);
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+
+    /**
+     * @return why the probe failed, null when it didn't
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public String getCipherSuite() {
+        return cipherSuite;
+    }
+
+    /**
+     * @return SHA-256 fingerprint of the server certificate, null when none was presented
+     */
+    public String getCertificateFingerprint() {
+        return certificateFingerprint;
+    }
+
+    /**
+     * @return days until the first certificate of the chain expires, {@link Long#MAX_VALUE} when unknown
+     */
+    public long getCertificateDaysToExpiry() {
+        return certificateDaysToExpiry;
+    }
+
+    /**
+     * @return handshake duration in nanoseconds, TCP connect excluded, or -1 when the handshake failed
+     */
+    public long getHandshakeNanos() {
+        return handshakeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return isSuccessful()
+                ? protocol + ", " + cipherSuite + ", " + HandshakeLatencyStats.millis(handshakeNanos) + " ms"
+                : "failed: " + failure;
+    }
+}
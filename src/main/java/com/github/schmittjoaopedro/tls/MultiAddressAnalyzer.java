@@ -0,0 +1,122 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Handshakes every address a host name resolves to, at once, where an HTTP client only reaches the first address that
+ * connects. SNI and host name verification use the host name for every address, as they would through DNS, so a load
+ * balancer node with another certificate, protocol or cipher suite, or a slow one, shows up in a single run.
+ * <p>
+ * Each address gets an SSLContext of its own: with a shared one, handshakes after the first would resume its session
+ * and skip the certificate exchange being compared.
+ */
+public class MultiAddressAnalyzer {
+
+    private final TLSSnifferService snifferService;
+    private final DnsResolver dnsResolver;
+    private final int parallelism;
+    private final int timeoutMillis;
+
+    public MultiAddressAnalyzer(TLSSnifferService snifferService, int parallelism, int timeoutMillis) {
+        this(snifferService, SystemDefaultDnsResolver.INSTANCE, parallelism, timeoutMillis);
+    }
+
+    /**
+     * @param dnsResolver returns every A and AAAA record of a host
+     */
+    public MultiAddressAnalyzer(TLSSnifferService snifferService, DnsResolver dnsResolver, int parallelism, int timeoutMillis) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.snifferService = snifferService;
+        this.dnsResolver = dnsResolver;
+        this.parallelism = parallelism;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public MultiAddressReport analyze(String url, String protocol, String cipher) throws IOException, InterruptedException {
+        URI uri = URI.create(url);
+        HttpHost host = new HttpHost(uri.getHost(), uri.getPort() > 0 ? uri.getPort() : 443, "https");
+        InetAddress[] addresses = dnsResolver.resolve(host.getHostName());
+        Semaphore permits = new Semaphore(parallelism);
+        ExecutorService executor = AnalysisExecutors.newExecutor("tls-multi-address", parallelism);
+        try {
+            List<Future<AddressResult>> handshakes = new ArrayList<>(addresses.length);
+            for (InetAddress address : addresses) {
+                handshakes.add(executor.submit(limited(permits, () -> handshake(host, address, protocol, cipher))));
+            }
+            List<AddressResult> results = new ArrayList<>(addresses.length);
+            for (Future<AddressResult> handshake : handshakes) {
+                try {
+                    results.add(handshake.get());
+                } catch (ExecutionException ex) {
+                    // handshake reports its own failures, anything reaching here is a programming error
+                    throw new IllegalStateException(ex.getCause());
+                }
+            }
+            return new MultiAddressReport(host.toHostString(), results);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private AddressResult handshake(HttpHost host, InetAddress address, String protocol, String cipher) {
+        PacketsSniffer packetsSniffer = new PacketsSniffer();
+        PacketsSnifferConnectionManager connectionManager = null;
+        String error = null;
+        long startNanos = System.nanoTime();
+        try {
+            SSLContext sslContext = snifferService.newSSLContext(protocol);
+            connectionManager = new PacketsSnifferConnectionManager(
+                    packetsSniffer,
+                    sslContext,
+                    StringUtils.isBlank(protocol) ? null : new String[]{protocol},
+                    StringUtils.isBlank(cipher) ? null : new String[]{cipher},
+                    dnsResolver);
+            Socket socket = connectionManager.openSecureSocket(host, new InetSocketAddress(address, host.getPort()), timeoutMillis);
+            socket.close();
+        } catch (Exception ex) {
+            // bad input such as an unknown cipher suite fails the address too, not the report
+            error = String.valueOf(ex.getMessage());
+        } finally {
+            if (connectionManager != null) {
+                connectionManager.shutdown();
+            }
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        List<PacketCaptureSession> captureSessions = packetsSniffer.getCaptureSessions();
+        ConnectionResult connection = captureSessions.isEmpty()
+                ? null
+                : new ConnectionResult(captureSessions.get(0), snifferService.getCertificateAnalysisCache(), false);
+        packetsSniffer.recycle();
+        return new AddressResult(address, connection, error, elapsedNanos);
+    }
+
+    private static <T> Callable<T> limited(Semaphore permits, Callable<T> task) {
+        return () -> {
+            permits.acquire();
+            try {
+                return task.call();
+            } finally {
+                permits.release();
+            }
+        };
+    }
+}
@@ -0,0 +1,214 @@
+package com.github.schmittjoaopedro.tls;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Outcome of a {@link MultiAddressAnalyzer}: the handshake with every address a host resolves to, compared with each
+ * other. An address is an outlier when its handshake fails, when its protocol, cipher suite or certificate differs from
+ * what most addresses negotiated, or when its handshake is over {@value #LATENCY_OUTLIER_FACTOR} times the median and
+ * at least {@value #LATENCY_OUTLIER_MIN_MILLIS} ms slower. Without a strict majority among the successful handshakes,
+ * such as two nodes that disagree, every address is an outlier for that attribute, whatever the resolver order.
+ */
+public class MultiAddressReport {
+
+    static final int LATENCY_OUTLIER_FACTOR = 3;
+    static final int LATENCY_OUTLIER_MIN_MILLIS = 10;
+
+    private final String host;
+    private final List<AddressResult> addresses;
+    private final Map<String, Integer> protocols;
+    private final Map<String, Integer> cipherSuites;
+    private final Map<String, Integer> certificates;
+    private final long medianHandshakeNanos;
+
+    MultiAddressReport(String host, List<AddressResult> addresses) {
+        this.host = host;
+        this.addresses = Collections.unmodifiableList(addresses);
+        this.protocols = countSuccessful(AddressResult::getProtocol);
+        this.cipherSuites = countSuccessful(AddressResult::getCipherSuite);
+        this.certificates = countSuccessful(AddressResult::getCertificateFingerprint);
+        this.medianHandshakeNanos = medianHandshakeNanos();
+        String majorityProtocol = majority(protocols);
+        String majorityCipherSuite = majority(cipherSuites);
+        String majorityCertificate = majority(certificates);
+        long latencyThresholdNanos = Math.max(medianHandshakeNanos * LATENCY_OUTLIER_FACTOR,
+                medianHandshakeNanos + LATENCY_OUTLIER_MIN_MILLIS * 1_000_000L);
+        for (AddressResult address : addresses) {
+            if (!address.isSuccessful()) {
+                address.addOutlierReason("handshake failed");
+                continue;
+            }
+            if (protocols.size() > 1 && !String.valueOf(address.getProtocol()).equals(majorityProtocol)) {
+                address.addOutlierReason("protocol " + address.getProtocol() + ", " + mostAddresses(majorityProtocol));
+            }
+            if (cipherSuites.size() > 1 && !String.valueOf(address.getCipherSuite()).equals(majorityCipherSuite)) {
+                address.addOutlierReason("cipher suite " + address.getCipherSuite() + ", " + mostAddresses(majorityCipherSuite));
+            }
+            if (certificates.size() > 1 && !String.valueOf(address.getCertificateFingerprint()).equals(majorityCertificate)) {
+                address.addOutlierReason("certificate " + abbreviate(address.getCertificateFingerprint())
+                        + ", " + mostAddresses(abbreviate(majorityCertificate)));
+            }
+            if (medianHandshakeNanos > 0 && address.getHandshakeNanos() > latencyThresholdNanos) {
+                address.addOutlierReason("handshake " + HandshakeLatencyStats.millis(address.getHandshakeNanos())
+                        + " ms, median " + HandshakeLatencyStats.millis(medianHandshakeNanos) + " ms");
+            }
+        }
+    }
+
+    private Map<String, Integer> countSuccessful(Function<AddressResult, String> attribute) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (AddressResult address : addresses) {
+            if (address.isSuccessful()) {
+                counts.merge(String.valueOf(attribute.apply(address)), 1, Integer::sum);
+            }
+        }
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * @return the value of more than half of the counts, null when there is none
+     */
+    private static String majority(Map<String, Integer> counts) {
+        int total = 0;
+        for (int count : counts.values()) {
+            total += count;
+        }
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            if (count.getValue() * 2 > total) {
+                return count.getKey();
+            }
+        }
+        return null;
+    }
+
+    private static String mostAddresses(String majority) {
+        return majority != null ? "most addresses " + majority : "no majority";
+    }
+
+    private long medianHandshakeNanos() {
+        long[] handshakes = addresses.stream()
+                .mapToLong(AddressResult::getHandshakeNanos)
+                .filter(nanos -> nanos >= 0)
+                .toArray();
+        if (handshakes.length == 0) {
+            return 0;
+        }
+        Arrays.sort(handshakes);
+        return handshakes[(handshakes.length - 1) / 2];
+    }
+
+    private static String abbreviate(String fingerprint) {
+        return fingerprint != null && fingerprint.length() > 16 ? fingerprint.substring(0, 16) + "..." : fingerprint;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return one result per resolved address, in resolver order
+     */
+    public List<AddressResult> getAddresses() {
+        return addresses;
+    }
+
+    public List<AddressResult> getOutliers() {
+        List<AddressResult> outliers = new ArrayList<>();
+        for (AddressResult address : addresses) {
+            if (address.isOutlier()) {
+                outliers.add(address);
+            }
+        }
+        return outliers;
+    }
+
+    /**
+     * @return protocol to the number of addresses that negotiated it
+     */
+    public Map<String, Integer> getProtocols() {
+        return protocols;
+    }
+
+    public Map<String, Integer> getCipherSuites() {
+        return cipherSuites;
+    }
+
+    /**
+     * @return server certificate fingerprint to the number of addresses presenting it
+     */
+    public Map<String, Integer> getCertificates() {
+        return certificates;
+    }
+
+    /**
+     * @return median handshake over the addresses whose handshake was observed, 0 when there is none
+     */
+    public long getMedianHandshakeNanos() {
+        return medianHandshakeNanos;
+    }
+
+    /**
+     * @return whether every address completed the handshake with the same protocol, cipher suite and certificate
+     */
+    public boolean isConsistent() {
+        for (AddressResult address : addresses) {
+            if (!address.isSuccessful()) {
+                return false;
+            }
+        }
+        return protocols.size() <= 1 && cipherSuites.size() <= 1 && certificates.size() <= 1;
+    }
+
+    public void appendTo(Appendable out) throws IOException {
+        out.append("---------------------------\n");
+        out.append("Multi-address handshake comparison\n");
+        out.append("Host: " + host + " (" + addresses.size() + " addresses)\n");
+        out.append("Consistent: " + (isConsistent() ? "yes" : "no") + "\n");
+        appendCounts(out, "Protocols", protocols, false);
+        appendCounts(out, "Cipher suites", cipherSuites, false);
+        appendCounts(out, "Certificates", certificates, true);
+        out.append("Median handshake: " + HandshakeLatencyStats.millis(medianHandshakeNanos) + " ms\n");
+        for (AddressResult address : addresses) {
+            out.append(address.getAddress().getHostAddress() + ": ");
+            if (address.isSuccessful()) {
+                out.append(address.getProtocol() + ", " + address.getCipherSuite() + ", certificate "
+                        + abbreviate(address.getCertificateFingerprint()) + ", handshake "
+                        + (address.getHandshakeNanos() >= 0 ? HandshakeLatencyStats.millis(address.getHandshakeNanos()) + " ms" : "n/a")
+                        + "\n");
+            } else {
+                out.append("failed, " + address.getError() + "\n");
+            }
+            for (String reason : address.getOutlierReasons()) {
+                out.append("\tOutlier: " + reason + "\n");
+            }
+        }
+        out.append("\n");
+    }
+
+    private static void appendCounts(Appendable out, String title, Map<String, Integer> counts, boolean fingerprints) throws IOException {
+        out.append(title + ":");
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            out.append(" " + (fingerprints ? abbreviate(count.getKey()) : count.getKey()) + " x" + count.getValue());
+        }
+        out.append("\n");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        try {
+            appendTo(report);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return report.toString();
+    }
+}
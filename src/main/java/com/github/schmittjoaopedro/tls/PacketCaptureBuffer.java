@@ -0,0 +1,274 @@
+package com.github.schmittjoaopedro.tls;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Store of captured bytes, appended in order. Data lives in pooled chunks and each packet (a run of bytes in the same
+ * direction) is described by its offset, length, direction and first/last {@code System.nanoTime()} in primitive arrays, so direction lookups are O(1) and
+ * no per-packet objects are created. {@link #recycle()} hands the chunks back to the pool for the next analysis.
+ */
+public class PacketCaptureBuffer {
+
+    private static final int INITIAL_PACKETS_CAPACITY = 32;
+
+    private final CaptureChunkPool chunkPool;
+    private final int chunkSize;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private long size;
+
+    private int packetsCount;
+    private long[] packetOffsets = new long[INITIAL_PACKETS_CAPACITY];
+    private int[] packetLengths = new int[INITIAL_PACKETS_CAPACITY];
+    private boolean[] outputPackets = new boolean[INITIAL_PACKETS_CAPACITY];
+    private long[] packetStartNanos = new long[INITIAL_PACKETS_CAPACITY];
+    private long[] packetEndNanos = new long[INITIAL_PACKETS_CAPACITY];
+
+    public PacketCaptureBuffer() {
+        this(CaptureChunkPool.getDefault());
+    }
+
+    public PacketCaptureBuffer(CaptureChunkPool chunkPool) {
+        this.chunkPool = chunkPool;
+        this.chunkSize = chunkPool.getChunkSize();
+    }
+
+    public void append(boolean output, int b) {
+        long now = System.nanoTime();
+        preparePacket(output, now);
+        chunkFor(size).put((int) (size % chunkSize), (byte) b);
+        size++;
+        packetLengths[packetsCount - 1]++;
+        packetEndNanos[packetsCount - 1] = now;
+    }
+
+    public void append(boolean output, byte[] b, int off, int len) {
+        if (len <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        preparePacket(output, now);
+        int remaining = len;
+        int srcOffset = off;
+        while (remaining > 0) {
+            ByteBuffer chunk = chunkFor(size);
+            int chunkOffset = (int) (size % chunkSize);
+            int count = Math.min(remaining, chunkSize - chunkOffset);
+            chunk.position(chunkOffset);
+            chunk.put(b, srcOffset, count);
+            srcOffset += count;
+            remaining -= count;
+            size += count;
+        }
+        packetLengths[packetsCount - 1] += len;
+        packetEndNanos[packetsCount - 1] = now;
+    }
+
+    public int getPacketsCount() {
+        return packetsCount;
+    }
+
+    public boolean isOutputPacket(int index) {
+        checkIndex(index);
+        return outputPackets[index];
+    }
+
+    public int getPacketLength(int index) {
+        checkIndex(index);
+        return packetLengths[index];
+    }
+
+    public long getPacketStartNanos(int index) {
+        checkIndex(index);
+        return packetStartNanos[index];
+    }
+
+    public long getPacketEndNanos(int index) {
+        checkIndex(index);
+        return packetEndNanos[index];
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getSize(boolean output) {
+        long directionSize = 0;
+        for (int i = 0; i < packetsCount; i++) {
+            if (outputPackets[i] == output) {
+                directionSize += packetLengths[i];
+            }
+        }
+        return directionSize;
+    }
+
+    public byte[] getPacket(int index) {
+        byte[] packet = new byte[getPacketLength(index)];
+        copyPacket(index, 0, packet, 0, packet.length);
+        return packet;
+    }
+
+    public void copyPacket(int index, int packetOffset, byte[] dst, int dstOffset, int len) {
+        checkIndex(index);
+        if (packetOffset < 0 || len < 0 || packetOffset + len > packetLengths[index]) {
+            throw new IndexOutOfBoundsException("Range " + packetOffset + "+" + len + " outside packet of " + packetLengths[index] + " bytes");
+        }
+        long position = packetOffsets[index] + packetOffset;
+        int remaining = len;
+        int dstPosition = dstOffset;
+        while (remaining > 0) {
+            ByteBuffer chunk = chunks.get((int) (position / chunkSize)).duplicate();
+            int chunkOffset = (int) (position % chunkSize);
+            int count = Math.min(remaining, chunkSize - chunkOffset);
+            chunk.position(chunkOffset);
+            chunk.get(dst, dstPosition, count);
+            dstPosition += count;
+            remaining -= count;
+            position += count;
+        }
+    }
+
+    /**
+     * Puts {@code len} bytes of the packet into {@code dst} straight from the chunks, advancing its position.
+     */
+    public void copyPacket(int index, int packetOffset, ByteBuffer dst, int len) {
+        checkIndex(index);
+        if (packetOffset < 0 || len < 0 || packetOffset + len > packetLengths[index]) {
+            throw new IndexOutOfBoundsException("Range " + packetOffset + "+" + len + " outside packet of " + packetLengths[index] + " bytes");
+        }
+        long position = packetOffsets[index] + packetOffset;
+        int remaining = len;
+        while (remaining > 0) {
+            ByteBuffer chunk = chunks.get((int) (position / chunkSize)).duplicate();
+            int chunkOffset = (int) (position % chunkSize);
+            int count = Math.min(remaining, chunkSize - chunkOffset);
+            chunk.limit(chunkOffset + count).position(chunkOffset);
+            dst.put(chunk);
+            remaining -= count;
+            position += count;
+        }
+    }
+
+    /**
+     * Writes the packet as hex straight from the chunks, without copying it into an intermediate array.
+     */
+    public void appendHex(int index, Appendable out) throws IOException {
+        checkIndex(index);
+        long position = packetOffsets[index];
+        int remaining = packetLengths[index];
+        while (remaining > 0) {
+            int chunkOffset = (int) (position % chunkSize);
+            int count = Math.min(remaining, chunkSize - chunkOffset);
+            ConversionUtils.appendHex(out, chunks.get((int) (position / chunkSize)), chunkOffset, chunkOffset + count);
+            remaining -= count;
+            position += count;
+        }
+    }
+
+    /**
+     * Drops the last {@code count} bytes captured in the given direction, even when packets of the other direction
+     * were appended after them. Those later bytes are moved back, and packets left empty are removed so the
+     * directions keep alternating.
+     *
+     * @return false, leaving the buffer untouched, when fewer than {@code count} bytes were captured in that direction
+     */
+    public boolean removeLast(boolean output, int count) {
+        if (count <= 0) {
+            return true;
+        }
+        if (getSize(output) < count) {
+            return false;
+        }
+        int remaining = count;
+        for (int i = packetsCount - 1; i >= 0 && remaining > 0; i--) {
+            if (outputPackets[i] != output) {
+                continue;
+            }
+            int removed = Math.min(remaining, packetLengths[i]);
+            packetLengths[i] -= removed;
+            removeRange(packetOffsets[i] + packetLengths[i], removed);
+            for (int j = i + 1; j < packetsCount; j++) {
+                packetOffsets[j] -= removed;
+            }
+            remaining -= removed;
+        }
+        removeEmptyPackets();
+        return true;
+    }
+
+    /**
+     * Releases the chunks back to the pool and forgets every packet. Metadata arrays are kept for reuse.
+     */
+    public void recycle() {
+        for (ByteBuffer chunk : chunks) {
+            chunkPool.release(chunk);
+        }
+        chunks.clear();
+        size = 0;
+        packetsCount = 0;
+    }
+
+    private void preparePacket(boolean output, long now) {
+        if (packetsCount == 0 || outputPackets[packetsCount - 1] != output) {
+            if (packetsCount == packetOffsets.length) {
+                int capacity = packetsCount * 2;
+                packetOffsets = Arrays.copyOf(packetOffsets, capacity);
+                packetLengths = Arrays.copyOf(packetLengths, capacity);
+                outputPackets = Arrays.copyOf(outputPackets, capacity);
+                packetStartNanos = Arrays.copyOf(packetStartNanos, capacity);
+                packetEndNanos = Arrays.copyOf(packetEndNanos, capacity);
+            }
+            packetOffsets[packetsCount] = size;
+            packetLengths[packetsCount] = 0;
+            outputPackets[packetsCount] = output;
+            packetStartNanos[packetsCount] = now;
+            packetsCount++;
+        }
+    }
+
+    private void removeRange(long position, int count) {
+        for (long from = position + count; from < size; from++) {
+            long to = from - count;
+            chunkFor(to).put((int) (to % chunkSize), chunkFor(from).get((int) (from % chunkSize)));
+        }
+        size -= count;
+    }
+
+    private void removeEmptyPackets() {
+        int kept = 0;
+        for (int i = 0; i < packetsCount; i++) {
+            if (packetLengths[i] == 0) {
+                continue;
+            }
+            if (kept > 0 && outputPackets[kept - 1] == outputPackets[i]) {
+                packetLengths[kept - 1] += packetLengths[i];
+                packetEndNanos[kept - 1] = packetEndNanos[i];
+                continue;
+            }
+            packetOffsets[kept] = packetOffsets[i];
+            packetLengths[kept] = packetLengths[i];
+            outputPackets[kept] = outputPackets[i];
+            packetStartNanos[kept] = packetStartNanos[i];
+            packetEndNanos[kept] = packetEndNanos[i];
+            kept++;
+        }
+        packetsCount = kept;
+    }
+
+    private ByteBuffer chunkFor(long position) {
+        int chunkIndex = (int) (position / chunkSize);
+        while (chunks.size() <= chunkIndex) {
+            chunks.add(chunkPool.acquire());
+        }
+        return chunks.get(chunkIndex);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= packetsCount) {
+            throw new IndexOutOfBoundsException("Packet " + index + " of " + packetsCount);
+        }
+    }
+}
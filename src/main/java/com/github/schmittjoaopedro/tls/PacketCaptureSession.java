@@ -0,0 +1,346 @@
+package com.github.schmittjoaopedro.tls;
+
+import javax.net.ssl.SSLSession;
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Capture of a single sniffed connection: its packets, decoded records and handshake timings. Appends of both
+ * directions are serialized on the session itself, so concurrent connections never contend with each other.
+ * Capture and parsing stop for good once the {@link CapturePolicy} limits are reached.
+ */
+public class PacketCaptureSession {
+
+    private final long id;
+    private final PacketCaptureBuffer captureBuffer;
+    private final CapturePolicy capturePolicy;
+
+    private final List<TLSRecordListener> recordListeners = new CopyOnWriteArrayList<>();
+    private final HandshakeTimingsRecorder timingsRecorder = new HandshakeTimingsRecorder();
+    private final TLSRecordLog recordLog;
+    private final TLSRecordParser outputRecordParser;
+    private final TLSRecordParser inputRecordParser;
+
+    private volatile boolean packetSniffingActive;
+    private volatile boolean capturing = true;
+    private volatile boolean captureTruncated;
+    private volatile boolean abortRequested;
+    private volatile boolean closed;
+    private volatile SocketAddress remoteAddress;
+    private volatile SSLSession sslSession;
+    private volatile long connectStartNanos;
+    private volatile long connectEndNanos;
+    private volatile long handshakeStartNanos;
+    private volatile long handshakeEndNanos;
+
+    // guarded by this
+    private int applicationRecords;
+    private int captureEnd = -1;
+    private int headerBytesBeforeFeed;
+
+    PacketCaptureSession(long id, PacketCaptureBuffer captureBuffer, CapturePolicy capturePolicy, boolean recordLogging,
+                         List<TLSRecordListener> sharedListeners) {
+        this.id = id;
+        this.captureBuffer = captureBuffer;
+        this.capturePolicy = capturePolicy;
+        this.recordLog = recordLogging ? new TLSRecordLog() : null;
+        recordListeners.add(timingsRecorder);
+        if (recordLog != null) {
+            recordListeners.add(recordLog);
+        }
+        recordListeners.addAll(sharedListeners);
+        TLSRecordListener recordDispatcher = createRecordDispatcher();
+        this.outputRecordParser = new TLSRecordParser(true, recordDispatcher);
+        this.inputRecordParser = new TLSRecordParser(false, recordDispatcher);
+    }
+
+    synchronized void captureOutput(int b) {
+        capture(true, outputRecordParser, b);
+    }
+
+    synchronized void captureOutput(byte[] b, int off, int len) {
+        capture(true, outputRecordParser, b, off, len);
+    }
+
+    synchronized void captureInput(int b) {
+        capture(false, inputRecordParser, b);
+    }
+
+    synchronized void captureInput(byte[] b, int off, int len) {
+        capture(false, inputRecordParser, b, off, len);
+    }
+
+    private void capture(boolean output, TLSRecordParser recordParser, int b) {
+        if (!capturing) {
+            return;
+        }
+        if (remainingBytes() < 1) {
+            stopCapture();
+            return;
+        }
+        captureEnd = -1;
+        recordParser.feed(b);
+        if (captureEnd >= 0) {
+            // the rest of the header of the record cut off was appended by the previous calls
+            removeCutRecordHeader(output);
+            stopCapture();
+            return;
+        }
+        captureBuffer.append(output, b);
+    }
+
+    private void capture(boolean output, TLSRecordParser recordParser, byte[] b, int off, int len) {
+        if (!capturing) {
+            return;
+        }
+        int budget = (int) Math.min(len, remainingBytes());
+        // parsed first, so a record past the limit is cut off where its header starts
+        captureEnd = -1;
+        recordParser.feed(b, off, budget);
+        if (captureEnd >= 0) {
+            // a header that started in an earlier call was appended in part already
+            removeCutRecordHeader(output);
+        }
+        int end = captureEnd >= 0 ? captureEnd : off + budget;
+        if (end > off) {
+            captureBuffer.append(output, b, off, end - off);
+        }
+        if (captureEnd >= 0 || budget < len) {
+            stopCapture();
+        }
+    }
+
+    /**
+     * The header bytes fed before may have been followed by packets of the other direction, so they are removed from
+     * wherever they landed rather than only from the last packet.
+     */
+    private void removeCutRecordHeader(boolean output) {
+        if (!captureBuffer.removeLast(output, headerBytesBeforeFeed)) {
+            // every byte fed to the parser while capturing was appended, so the header must be there
+            throw new IllegalStateException("Missing " + headerBytesBeforeFeed + " header bytes of the record cut off");
+        }
+    }
+
+    private long remainingBytes() {
+        long maxBytes = capturePolicy.getMaxBytesPerConnection();
+        return maxBytes == CapturePolicy.UNLIMITED ? Long.MAX_VALUE : maxBytes - captureBuffer.getSize();
+    }
+
+    private void stopCapture() {
+        capturing = false;
+        captureTruncated = true;
+    }
+
+    /**
+     * Called by the parser in progress, so the listeners never see records beyond the limit.
+     */
+    private boolean acceptRecord(boolean output, int contentType) {
+        if (captureEnd >= 0) {
+            return false;
+        }
+        int maxRecords = capturePolicy.getMaxApplicationRecords();
+        if (maxRecords != CapturePolicy.UNLIMITED && handshakeEndNanos != 0
+                && contentType == TLSContentType.APPLICATION_DATA.getCode() && ++applicationRecords > maxRecords) {
+            TLSRecordParser recordParser = output ? outputRecordParser : inputRecordParser;
+            captureEnd = recordParser.getRecordStartOffset();
+            headerBytesBeforeFeed = recordParser.getRecordHeaderBytesBeforeFeed();
+            return false;
+        }
+        return true;
+    }
+
+    private TLSRecordListener createRecordDispatcher() {
+        return new TLSRecordListener() {
+            @Override
+            public void onRecord(boolean output, int contentType, int version, int length) {
+                if (!acceptRecord(output, contentType)) {
+                    return;
+                }
+                for (TLSRecordListener listener : recordListeners) {
+                    listener.onRecord(output, contentType, version, length);
+                }
+            }
+
+            @Override
+            public void onHandshakeMessage(boolean output, int handshakeType, int length) {
+                if (captureEnd >= 0) {
+                    return;
+                }
+                for (TLSRecordListener listener : recordListeners) {
+                    listener.onHandshakeMessage(output, handshakeType, length);
+                }
+            }
+
+            @Override
+            public void onHandshakeBody(boolean output, int handshakeType, byte[] b, int off, int len) {
+                if (captureEnd >= 0) {
+                    return;
+                }
+                for (TLSRecordListener listener : recordListeners) {
+                    listener.onHandshakeBody(output, handshakeType, b, off, len);
+                }
+            }
+
+            @Override
+            public void onEncryptedHandshakeMessage(boolean output, int length) {
+                if (captureEnd >= 0) {
+                    return;
+                }
+                for (TLSRecordListener listener : recordListeners) {
+                    listener.onEncryptedHandshakeMessage(output, length);
+                }
+            }
+
+            @Override
+            public void onChangeCipherSpec(boolean output) {
+                if (captureEnd >= 0) {
+                    return;
+                }
+                for (TLSRecordListener listener : recordListeners) {
+                    listener.onChangeCipherSpec(output);
+                }
+            }
+
+            @Override
+            public void onAlert(boolean output, int level, int description) {
+                if (captureEnd >= 0) {
+                    return;
+                }
+                for (TLSRecordListener listener : recordListeners) {
+                    listener.onAlert(output, level, description);
+                }
+            }
+
+            @Override
+            public void onUnrecognizedData(boolean output) {
+                if (captureEnd >= 0) {
+                    return;
+                }
+                for (TLSRecordListener listener : recordListeners) {
+                    listener.onUnrecognizedData(output);
+                }
+            }
+        };
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public boolean isPacketSniffingActive() {
+        return packetSniffingActive;
+    }
+
+    public void setPacketSniffingActive(boolean packetSniffingActive) {
+        this.packetSniffingActive = packetSniffingActive;
+    }
+
+    /**
+     * @return false once a {@link CapturePolicy} limit stopped the capture
+     */
+    public boolean isCapturing() {
+        return capturing;
+    }
+
+    /**
+     * @return true when the capture misses traffic because of a {@link CapturePolicy} limit
+     */
+    public boolean isCaptureTruncated() {
+        return captureTruncated;
+    }
+
+    /**
+     * Makes the next read of the sniffed socket fail with {@link CaptureAbortedException}, once the bytes already read
+     * have been captured. Safe to call from record listeners.
+     */
+    public void requestAbort() {
+        abortRequested = true;
+    }
+
+    public boolean isAbortRequested() {
+        return abortRequested;
+    }
+
+    /**
+     * Listeners added after the handshake started miss the events already emitted.
+     */
+    public void addRecordListener(TLSRecordListener recordListener) {
+        recordListeners.add(recordListener);
+    }
+
+    /**
+     * @return false when the session was already marked closed
+     */
+    synchronized boolean markClosed() {
+        if (closed) {
+            return false;
+        }
+        closed = true;
+        return true;
+    }
+
+    /**
+     * @return whether the socket of the session was closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    void markConnectStarted(SocketAddress remoteAddress) {
+        this.remoteAddress = remoteAddress;
+        connectStartNanos = System.nanoTime();
+    }
+
+    void markConnectCompleted() {
+        connectEndNanos = System.nanoTime();
+    }
+
+    void markHandshakeStarted() {
+        handshakeStartNanos = System.nanoTime();
+    }
+
+    void markHandshakeCompleted(SSLSession sslSession) {
+        handshakeEndNanos = System.nanoTime();
+        this.sslSession = sslSession;
+    }
+
+    long getConnectStartNanos() {
+        return connectStartNanos;
+    }
+
+    long getConnectEndNanos() {
+        return connectEndNanos;
+    }
+
+    public SocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public SSLSession getSSLSession() {
+        return sslSession;
+    }
+
+    public HandshakeTimings getHandshakeTimings() {
+        return timingsRecorder.toTimings(connectStartNanos, connectEndNanos, handshakeStartNanos, handshakeEndNanos);
+    }
+
+    /**
+     * @return the decoded records, or null when the sniffer was not asked to log them
+     */
+    public TLSRecordLog getRecordLog() {
+        return recordLog;
+    }
+
+    /**
+     * Direct access to the captured packets. Reads must not overlap with traffic on the connection, or must be made
+     * while holding the session's monitor.
+     */
+    public PacketCaptureBuffer getCaptureBuffer() {
+        return captureBuffer;
+    }
+
+    synchronized void recycle() {
+        captureBuffer.recycle();
+    }
+}
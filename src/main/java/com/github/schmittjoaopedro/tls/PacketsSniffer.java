@@ -1,134 +1,245 @@
 package com.github.schmittjoaopedro.tls;
 
-import java.io.ByteArrayOutputStream;
+import javax.net.ssl.SSLSocket;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
-import java.util.LinkedList;
-
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates sockets whose traffic is captured. Every socket gets its own {@link PacketCaptureSession}, registered in a
+ * lock-free queue, so a single sniffer can instrument a whole connection pool under concurrent use. A
+ * {@link CapturePolicy} bounds what is kept; connections it doesn't sample get plain sockets, and sessions are
+ * released as their sockets close when it asks to.
+ */
 public class PacketsSniffer {
 
-    private boolean packetSniffingActive = false;
-
-    private final LinkedList<ByteArrayOutputStream> inputPacketBytes = new LinkedList<>();
-    private final LinkedList<ByteArrayOutputStream> outputPacketBytes = new LinkedList<>();
-    private final LinkedList<ByteArrayOutputStream> allPacketBytes = new LinkedList<>();
+    private final CaptureChunkPool chunkPool;
+    private final boolean recordLogging;
+    private final CapturePolicy capturePolicy;
 
-    public Socket createSnifferSocket() {
-        return new Socket() {
-            @Override
-            public OutputStream getOutputStream() throws IOException {
-                final OutputStream base = super.getOutputStream();
-                if (isPacketSniffingActive()) {
-                    return new OutputStream() {
-                        @Override
-                        public void write(int b) throws IOException {
-                            createFirstOutputPacket();
-                            anticipatePacketForInputStream();
-                            sniffOutput(b);
-                            base.write(b);
-                        }
+    private final AtomicLong connectionCount = new AtomicLong();
+    private final AtomicLong sessionIds = new AtomicLong();
+    private final Queue<PacketCaptureSession> captureSessions = new ConcurrentLinkedQueue<>();
+    private final List<TLSRecordListener> recordListeners = new CopyOnWriteArrayList<>();
+    private final List<CaptureSessionListener> sessionListeners = new CopyOnWriteArrayList<>();
 
-                        @Override
-                        public void write(byte[] b, int off, int len) throws IOException {
-                            createFirstOutputPacket();
-                            anticipatePacketForInputStream();
-                            sniffOutput(b, off, len);
-                            base.write(b, off, len);
-                        }
-                    };
-                }
-                return base;
-            }
+    public PacketsSniffer() {
+        this(CaptureChunkPool.getDefault(), false);
+    }
 
-            @Override
-            public InputStream getInputStream() throws IOException {
-                final InputStream base = super.getInputStream();
-                if (isPacketSniffingActive()) {
-                    return new InputStream() {
-                        @Override
-                        public int read() throws IOException {
-                            createFirstInputPacket();
-                            anticipatePacketForOutputStream();
-                            int b = base.read();
-                            sniffInput(b);
-                            return b;
-                        }
+    /**
+     * @param recordLogging keep a {@link TLSRecordLog} of the decoded records of every session
+     */
+    public PacketsSniffer(CaptureChunkPool chunkPool, boolean recordLogging) {
+        this(chunkPool, recordLogging, CapturePolicy.CAPTURE_ALL);
+    }
 
-                        @Override
-                        public int read(byte[] b, int off, int len) throws IOException {
-                            createFirstInputPacket();
-                            anticipatePacketForOutputStream();
-                            int data = base.read(b, off, len);
-                            sniffInput(b, off, len);
-                            return data;
-                        }
-                    };
-                }
-                return base;
-            }
-        };
+    public PacketsSniffer(CaptureChunkPool chunkPool, boolean recordLogging, CapturePolicy capturePolicy) {
+        this.chunkPool = chunkPool;
+        this.recordLogging = recordLogging;
+        this.capturePolicy = capturePolicy;
     }
 
-    private void createFirstOutputPacket() {
-        if (outputPacketBytes.isEmpty()) {
-            outputPacketBytes.addLast(new ByteArrayOutputStream());
-            allPacketBytes.addLast(outputPacketBytes.getLast());
+    /**
+     * @return a sniffed socket, or a plain one when the connection is left out by sampling
+     */
+    public Socket createSnifferSocket() {
+        if (!capturePolicy.isSampled(connectionCount.incrementAndGet())) {
+            return new Socket();
         }
+        return new SnifferSocket(this, openCaptureSession());
     }
 
-    private void anticipatePacketForInputStream() {
-        if (!inputPacketBytes.isEmpty() && inputPacketBytes.getLast().size() != 0) {
-            inputPacketBytes.addLast(new ByteArrayOutputStream());
-            allPacketBytes.addLast(inputPacketBytes.getLast());
+    /**
+     * A registered session for a connection that is not a socket of this sniffer, such as an {@link SSLEngineProbe}
+     * channel. Sampling doesn't apply, the other policy limits do.
+     */
+    PacketCaptureSession openCaptureSession() {
+        PacketCaptureSession captureSession = new PacketCaptureSession(
+                sessionIds.incrementAndGet(), new PacketCaptureBuffer(chunkPool), capturePolicy, recordLogging, recordListeners);
+        captureSessions.add(captureSession);
+        return captureSession;
+    }
+
+    /**
+     * @return the capture session of a socket created by this sniffer, or null for any other socket
+     */
+    public PacketCaptureSession getCaptureSession(Socket socket) {
+        if (socket instanceof SnifferSocket) {
+            return ((SnifferSocket) socket).captureSession;
         }
+        return null;
     }
 
-    private void sniffOutput(int b) {
-        outputPacketBytes.getLast().write(b);
+    public List<PacketCaptureSession> getCaptureSessions() {
+        return new ArrayList<>(captureSessions);
     }
 
-    private void sniffOutput(byte[] b, int off, int len) {
-        outputPacketBytes.getLast().write(b, off, len);
+    /**
+     * Events of every session created afterwards are delivered to {@code recordListener}, possibly from many threads
+     * at once.
+     */
+    public void addRecordListener(TLSRecordListener recordListener) {
+        recordListeners.add(recordListener);
     }
 
-    private void createFirstInputPacket() {
-        if (inputPacketBytes.isEmpty()) {
-            inputPacketBytes.addLast(new ByteArrayOutputStream());
-            allPacketBytes.addLast(inputPacketBytes.getLast());
-        }
+    public void removeRecordListener(TLSRecordListener recordListener) {
+        recordListeners.remove(recordListener);
+    }
+
+    public void addCaptureSessionListener(CaptureSessionListener sessionListener) {
+        sessionListeners.add(sessionListener);
+    }
+
+    public void removeCaptureSessionListener(CaptureSessionListener sessionListener) {
+        sessionListeners.remove(sessionListener);
     }
 
-    private void anticipatePacketForOutputStream() {
-        if (!outputPacketBytes.isEmpty() && outputPacketBytes.getLast().size() != 0) {
-            outputPacketBytes.addLast(new ByteArrayOutputStream());
-            allPacketBytes.addLast(outputPacketBytes.getLast());
+    void onHandshakeStarted(Socket socket) {
+        PacketCaptureSession captureSession = getCaptureSession(socket);
+        if (captureSession != null) {
+            captureSession.setPacketSniffingActive(true);
+            captureSession.markHandshakeStarted();
         }
     }
 
-    private void sniffInput(int b) {
-        inputPacketBytes.getLast().write(b);
+    void onHandshakeCompleted(Socket socket, Socket sslSocket) {
+        PacketCaptureSession captureSession = getCaptureSession(socket);
+        if (captureSession != null) {
+            captureSession.markHandshakeCompleted(sslSocket instanceof SSLSocket ? ((SSLSocket) sslSocket).getSession() : null);
+            captureSession.setPacketSniffingActive(false);
+        }
     }
 
-    private void sniffInput(byte[] b, int off, int len) {
-        inputPacketBytes.getLast().write(b, off, len);
+    void onHandshakeFailed(Socket socket) {
+        PacketCaptureSession captureSession = getCaptureSession(socket);
+        if (captureSession != null) {
+            captureSession.setPacketSniffingActive(false);
+        }
     }
 
-    public boolean isPacketSniffingActive() {
-        return packetSniffingActive;
+    void onSocketClosed(PacketCaptureSession captureSession) {
+        if (!captureSession.markClosed()) {
+            return;
+        }
+        try {
+            for (CaptureSessionListener sessionListener : sessionListeners) {
+                sessionListener.onCaptureSessionClosed(captureSession);
+            }
+        } finally {
+            if (capturePolicy.isReleaseOnClose()) {
+                releaseCaptureSession(captureSession);
+            }
+        }
     }
 
-    public void setPacketSniffingActive(boolean packetSniffingActive) {
-        this.packetSniffingActive = packetSniffingActive;
+    public void releaseCaptureSession(PacketCaptureSession captureSession) {
+        if (captureSessions.remove(captureSession)) {
+            captureSession.recycle();
+        }
     }
 
-    public LinkedList<ByteArrayOutputStream> getAllPackages() {
-        return allPacketBytes;
+    public void recycle() {
+        PacketCaptureSession captureSession;
+        while ((captureSession = captureSessions.poll()) != null) {
+            captureSession.recycle();
+        }
     }
 
-    public boolean isOutputPacket(ByteArrayOutputStream packet) {
-        return outputPacketBytes.contains(packet);
+    private static class SnifferSocket extends Socket {
+
+        private final PacketsSniffer packetsSniffer;
+        private final PacketCaptureSession captureSession;
+
+        private SnifferSocket(PacketsSniffer packetsSniffer, PacketCaptureSession captureSession) {
+            this.packetsSniffer = packetsSniffer;
+            this.captureSession = captureSession;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                packetsSniffer.onSocketClosed(captureSession);
+            }
+        }
+
+        @Override
+        public void connect(SocketAddress endpoint, int timeout) throws IOException {
+            captureSession.markConnectStarted(endpoint);
+            super.connect(endpoint, timeout);
+            captureSession.markConnectCompleted();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            final OutputStream base = super.getOutputStream();
+            if (captureSession.isPacketSniffingActive() && captureSession.isCapturing()) {
+                return new OutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        // unsynchronized check, stopped captures cost a volatile read
+                        if (captureSession.isCapturing()) {
+                            captureSession.captureOutput(b);
+                        }
+                        base.write(b);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        if (captureSession.isCapturing()) {
+                            captureSession.captureOutput(b, off, len);
+                        }
+                        base.write(b, off, len);
+                    }
+                };
+            }
+            return base;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            final InputStream base = super.getInputStream();
+            if (captureSession.isPacketSniffingActive() && captureSession.isCapturing()) {
+                return new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        int b = base.read();
+                        if (b != -1 && captureSession.isCapturing()) {
+                            captureSession.captureInput(b);
+                        }
+                        checkAbort();
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int data = base.read(b, off, len);
+                        if (data > 0 && captureSession.isCapturing()) {
+                            captureSession.captureInput(b, off, data);
+                        }
+                        checkAbort();
+                        return data;
+                    }
+                };
+            }
+            return base;
+        }
+
+        private void checkAbort() throws CaptureAbortedException {
+            if (captureSession.isAbortRequested()) {
+                throw new CaptureAbortedException("Capture session " + captureSession.getId() + " aborted");
+            }
+        }
     }
 
 }
@@ -1,12 +1,15 @@
 package com.github.schmittjoaopedro.tls;
 
 import org.apache.http.HttpHost;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.DnsResolver;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
 import org.apache.http.protocol.HttpContext;
 
 import javax.net.ssl.SSLContext;
@@ -16,14 +19,53 @@ import java.net.Socket;
 
 public class PacketsSnifferConnectionManager extends PoolingHttpClientConnectionManager {
 
+    private final LayeredConnectionSocketFactory httpsSocketFactory;
+
     public PacketsSnifferConnectionManager(final PacketsSniffer packetsSniffer,
                                            final SSLContext sslContext,
                                            final String[] supportedProtocols,
                                            final String[] supportedCipherSuites) {
+        this(packetsSniffer, sslContext, supportedProtocols, supportedCipherSuites, SystemDefaultDnsResolver.INSTANCE);
+    }
+
+    /**
+     * @param dnsResolver resolves host names for pooled connections
+     */
+    public PacketsSnifferConnectionManager(final PacketsSniffer packetsSniffer,
+                                           final SSLContext sslContext,
+                                           final String[] supportedProtocols,
+                                           final String[] supportedCipherSuites,
+                                           final DnsResolver dnsResolver) {
+        this(packetsSniffer, createHttpsSocketFactory(packetsSniffer, sslContext, supportedProtocols, supportedCipherSuites),
+                dnsResolver);
+    }
+
+    private PacketsSnifferConnectionManager(final PacketsSniffer packetsSniffer,
+                                            final LayeredConnectionSocketFactory httpsSocketFactory,
+                                            final DnsResolver dnsResolver) {
         super(RegistryBuilder.<ConnectionSocketFactory>create()
                 .register("http", createHttpSocketFactory(packetsSniffer))
-                .register("https", createHttpsSocketFactory(packetsSniffer, sslContext, supportedProtocols, supportedCipherSuites))
-                .build());
+                .register("https", httpsSocketFactory)
+                .build(), dnsResolver);
+        this.httpsSocketFactory = httpsSocketFactory;
+    }
+
+    /**
+     * Connects and handshakes a sniffed socket through the same path pooled connections take, without any HTTP
+     * exchange. The caller owns the returned socket.
+     */
+    public Socket openSecureSocket(final HttpHost host,
+                                   final InetSocketAddress remoteAddress,
+                                   final int timeoutMillis) throws IOException {
+        HttpContext context = HttpClientContext.create();
+        Socket socket = httpsSocketFactory.createSocket(context);
+        try {
+            socket.setSoTimeout(timeoutMillis);
+            return httpsSocketFactory.connectSocket(timeoutMillis, socket, host, remoteAddress, null, context);
+        } catch (IOException | RuntimeException ex) {
+            socket.close();
+            throw ex;
+        }
     }
 
     private static ConnectionSocketFactory createHttpSocketFactory(final PacketsSniffer packetsSniffer) {
@@ -66,9 +108,15 @@ public class PacketsSnifferConnectionManager extends PoolingHttpClientConnection
                 SSLConnectionSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER) {
             @Override
             public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context) throws IOException {
-                packetsSniffer.setPacketSniffingActive(true);
-                Socket sslSocket = super.createLayeredSocket(socket, target, port, context); // calls handshake
-                packetsSniffer.setPacketSniffingActive(false);
+                packetsSniffer.onHandshakeStarted(socket);
+                Socket sslSocket;
+                try {
+                    sslSocket = super.createLayeredSocket(socket, target, port, context); // calls handshake
+                } catch (IOException | RuntimeException ex) {
+                    packetsSniffer.onHandshakeFailed(socket);
+                    throw ex;
+                }
+                packetsSniffer.onHandshakeCompleted(socket, sslSocket);
                 return sslSocket;
             }
 
@@ -0,0 +1,334 @@
+package com.github.schmittjoaopedro.tls;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Streams captures to a pcapng file that Wireshark opens as TCP conversations. Each captured read or write becomes
+ * one segment of a synthesized IPv4/TCP connection, with the capture direction and its nanosecond timestamp; the
+ * connection opens with a three-way handshake at connect time and closes with FINs on {@link #finish}.
+ * <p>
+ * Blocks are assembled in a fixed direct buffer and appended to a {@link FileChannel}, so heap use doesn't depend on
+ * the capture size. {@link #export} only writes packets captured since its previous call for the same session, so
+ * long runs can export periodically, then finish and release sessions as their connections end. Registered with
+ * {@link PacketsSniffer#addCaptureSessionListener}, the exporter finishes sessions itself as their sockets close, before
+ * a {@link CapturePolicy} releasing closed sessions recycles them; a write failing then is thrown by the next
+ * {@link #export}, {@link #flush} or {@link #close}. Sessions are held weakly, so the ones dropped by their sniffer
+ * unfinished don't pile up either.
+ * <p>
+ * The client side uses the synthetic address 10.0.0.1 and a port per session, the server side keeps the remote IPv4
+ * address (a synthetic one for IPv6) and port. TCP checksums are left at zero.
+ */
+public class PcapngExporter implements Closeable, CaptureSessionListener {
+
+    private static final int SECTION_HEADER_BLOCK = 0x0A0D0D0A;
+    private static final int INTERFACE_DESCRIPTION_BLOCK = 0x00000001;
+    private static final int ENHANCED_PACKET_BLOCK = 0x00000006;
+    private static final int BYTE_ORDER_MAGIC = 0x1A2B3C4D;
+    private static final short LINKTYPE_RAW = 101;
+    private static final short OPTION_END = 0;
+    private static final short OPTION_TIMESTAMP_RESOLUTION = 9;
+    private static final byte NANOSECONDS_RESOLUTION = 9;
+
+    private static final int IP_HEADER_LENGTH = 20;
+    private static final int TCP_HEADER_LENGTH = 20;
+    private static final int MAX_SEGMENT_PAYLOAD = 65535 - IP_HEADER_LENGTH - TCP_HEADER_LENGTH;
+    private static final int ENHANCED_PACKET_OVERHEAD = 32;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final int FIN = 0x01;
+    private static final int SYN = 0x02;
+    private static final int PSH = 0x08;
+    private static final int ACK = 0x10;
+
+    private static final byte[] CLIENT_ADDRESS = {10, 0, 0, 1};
+    private static final byte[] SYNTHETIC_SERVER_ADDRESS = {10, 0, 0, 2};
+    private static final int FIRST_CLIENT_PORT = 32768;
+    private static final int CLIENT_PORTS = 28232;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    // pcapng timestamps are wall clock, captures are System.nanoTime()
+    private final long epochOffsetNanos = System.currentTimeMillis() * 1_000_000L - System.nanoTime();
+    // weak, so sessions released by their sniffer don't pile up over long runs; sessions compare by identity
+    private final Map<PacketCaptureSession, TcpConnection> connections = new WeakHashMap<>();
+    private final Set<PacketCaptureSession> finishedSessions = Collections.newSetFromMap(new WeakHashMap<>());
+    private IOException listenerFailure;
+    private int nextClientPort;
+    private short ipId;
+
+    public PcapngExporter(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        writeSectionHeader();
+        writeInterfaceDescription();
+    }
+
+    /**
+     * Appends the packets the session captured since the last call, holding the session's monitor meanwhile. A capture
+     * recycled in between is only noticed when it holds fewer packets than were exported, so finish sessions first.
+     * Finished sessions are skipped.
+     */
+    public synchronized void export(PacketCaptureSession captureSession) throws IOException {
+        throwListenerFailure();
+        if (finishedSessions.contains(captureSession)) {
+            return;
+        }
+        TcpConnection connection = connections.get(captureSession);
+        synchronized (captureSession) {
+            PacketCaptureBuffer captureBuffer = captureSession.getCaptureBuffer();
+            int packetsCount = captureBuffer.getPacketsCount();
+            if (connection == null) {
+                if (packetsCount == 0 && captureSession.getConnectStartNanos() == 0) {
+                    return;
+                }
+                connection = openConnection(captureSession);
+            }
+            if (packetsCount < connection.exportedPackets) {
+                // the capture was recycled
+                connection.exportedPackets = 0;
+            }
+            for (int i = connection.exportedPackets; i < packetsCount; i++) {
+                writePacket(connection, captureBuffer, i);
+            }
+            connection.exportedPackets = packetsCount;
+        }
+    }
+
+    public void exportAll(PacketsSniffer packetsSniffer) throws IOException {
+        for (PacketCaptureSession captureSession : packetsSniffer.getCaptureSessions()) {
+            export(captureSession);
+        }
+    }
+
+    /**
+     * Exports what is left of the session and closes its TCP connection; later exports skip the session, even while
+     * its sniffer still lists it.
+     */
+    public synchronized void finish(PacketCaptureSession captureSession) throws IOException {
+        export(captureSession);
+        TcpConnection connection = connections.remove(captureSession);
+        finishedSessions.add(captureSession);
+        if (connection != null) {
+            long timestamp = connection.lastTimestampNanos;
+            writeControlSegment(connection, true, FIN | ACK, timestamp);
+            connection.clientSeq++;
+            writeControlSegment(connection, false, FIN | ACK, timestamp);
+            connection.serverSeq++;
+            writeControlSegment(connection, true, ACK, timestamp);
+        }
+    }
+
+    /**
+     * Finishes the session of a socket that was just closed.
+     */
+    @Override
+    public synchronized void onCaptureSessionClosed(PacketCaptureSession captureSession) {
+        try {
+            finish(captureSession);
+        } catch (IOException ex) {
+            if (listenerFailure == null) {
+                listenerFailure = ex;
+            }
+        }
+    }
+
+    private void throwListenerFailure() throws IOException {
+        IOException failure = listenerFailure;
+        if (failure != null) {
+            listenerFailure = null;
+            throw failure;
+        }
+    }
+
+    public synchronized void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        throwListenerFailure();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private TcpConnection openConnection(PacketCaptureSession captureSession) throws IOException {
+        TcpConnection connection = new TcpConnection(captureSession.getRemoteAddress(),
+                FIRST_CLIENT_PORT + nextClientPort);
+        nextClientPort = (nextClientPort + 1) % CLIENT_PORTS;
+        connections.put(captureSession, connection);
+        long connectStart = captureSession.getConnectStartNanos();
+        long connectEnd = captureSession.getConnectEndNanos();
+        PacketCaptureBuffer captureBuffer = captureSession.getCaptureBuffer();
+        if (connectStart == 0) {
+            connectStart = captureBuffer.getPacketsCount() > 0 ? captureBuffer.getPacketStartNanos(0) : System.nanoTime();
+        }
+        if (connectEnd < connectStart) {
+            connectEnd = connectStart;
+        }
+        writeControlSegment(connection, true, SYN, connectStart);
+        connection.clientSeq++;
+        writeControlSegment(connection, false, SYN | ACK, connectEnd);
+        connection.serverSeq++;
+        writeControlSegment(connection, true, ACK, connectEnd);
+        return connection;
+    }
+
+    private void writePacket(TcpConnection connection, PacketCaptureBuffer captureBuffer, int index) throws IOException {
+        boolean output = captureBuffer.isOutputPacket(index);
+        long timestamp = captureBuffer.getPacketStartNanos(index);
+        int length = captureBuffer.getPacketLength(index);
+        for (int offset = 0; offset < length; offset += MAX_SEGMENT_PAYLOAD) {
+            int payload = Math.min(MAX_SEGMENT_PAYLOAD, length - offset);
+            writeSegment(connection, output, PSH | ACK, timestamp, captureBuffer, index, offset, payload);
+            if (output) {
+                connection.clientSeq += payload;
+            } else {
+                connection.serverSeq += payload;
+            }
+        }
+    }
+
+    private void writeControlSegment(TcpConnection connection, boolean output, int flags, long timestampNanos) throws IOException {
+        writeSegment(connection, output, flags, timestampNanos, null, 0, 0, 0);
+    }
+
+    private void writeSegment(TcpConnection connection, boolean output, int flags, long timestampNanos,
+                              PacketCaptureBuffer captureBuffer, int index, int payloadOffset, int payload) throws IOException {
+        int packetLength = IP_HEADER_LENGTH + TCP_HEADER_LENGTH + payload;
+        int paddedLength = (packetLength + 3) & ~3;
+        int blockLength = ENHANCED_PACKET_OVERHEAD + paddedLength;
+        ensureCapacity(blockLength);
+        connection.lastTimestampNanos = Math.max(connection.lastTimestampNanos, timestampNanos);
+        long epochNanos = epochOffsetNanos + timestampNanos;
+
+        buffer.putInt(ENHANCED_PACKET_BLOCK);
+        buffer.putInt(blockLength);
+        buffer.putInt(0);
+        buffer.putInt((int) (epochNanos >>> 32));
+        buffer.putInt((int) epochNanos);
+        buffer.putInt(packetLength);
+        buffer.putInt(packetLength);
+
+        // network headers are big-endian
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        int ipStart = buffer.position();
+        buffer.put((byte) 0x45);
+        buffer.put((byte) 0);
+        buffer.putShort((short) packetLength);
+        buffer.putShort(ipId++);
+        buffer.putShort((short) 0x4000);
+        buffer.put((byte) 64);
+        buffer.put((byte) 6);
+        buffer.putShort((short) 0);
+        buffer.put(output ? CLIENT_ADDRESS : connection.serverAddress);
+        buffer.put(output ? connection.serverAddress : CLIENT_ADDRESS);
+        buffer.putShort(ipStart + 10, ipChecksum(ipStart));
+
+        buffer.putShort((short) (output ? connection.clientPort : connection.serverPort));
+        buffer.putShort((short) (output ? connection.serverPort : connection.clientPort));
+        buffer.putInt(output ? connection.clientSeq : connection.serverSeq);
+        buffer.putInt((flags & ACK) != 0 ? (output ? connection.serverSeq : connection.clientSeq) : 0);
+        buffer.put((byte) (5 << 4));
+        buffer.put((byte) flags);
+        buffer.putShort((short) 0xffff);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (payload > 0) {
+            captureBuffer.copyPacket(index, payloadOffset, buffer, payload);
+        }
+        pad(paddedLength - packetLength);
+        buffer.putInt(blockLength);
+    }
+
+    private short ipChecksum(int ipStart) {
+        int sum = 0;
+        for (int i = 0; i < IP_HEADER_LENGTH; i += 2) {
+            sum += buffer.getShort(ipStart + i) & 0xffff;
+        }
+        while ((sum >>> 16) != 0) {
+            sum = (sum & 0xffff) + (sum >>> 16);
+        }
+        return (short) ~sum;
+    }
+
+    private void writeSectionHeader() throws IOException {
+        ensureCapacity(28);
+        buffer.putInt(SECTION_HEADER_BLOCK);
+        buffer.putInt(28);
+        buffer.putInt(BYTE_ORDER_MAGIC);
+        buffer.putShort((short) 1);
+        buffer.putShort((short) 0);
+        // section length unknown
+        buffer.putLong(-1L);
+        buffer.putInt(28);
+    }
+
+    private void writeInterfaceDescription() throws IOException {
+        ensureCapacity(32);
+        buffer.putInt(INTERFACE_DESCRIPTION_BLOCK);
+        buffer.putInt(32);
+        buffer.putShort(LINKTYPE_RAW);
+        buffer.putShort((short) 0);
+        buffer.putInt(0);
+        buffer.putShort(OPTION_TIMESTAMP_RESOLUTION);
+        buffer.putShort((short) 1);
+        buffer.put(NANOSECONDS_RESOLUTION);
+        pad(3);
+        buffer.putShort(OPTION_END);
+        buffer.putShort((short) 0);
+        buffer.putInt(32);
+    }
+
+    private void pad(int count) {
+        for (int i = 0; i < count; i++) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if (buffer.remaining() < length) {
+            flush();
+        }
+    }
+
+    private static class TcpConnection {
+
+        private final byte[] serverAddress;
+        private final int serverPort;
+        private final int clientPort;
+        private int clientSeq;
+        private int serverSeq;
+        private int exportedPackets;
+        private long lastTimestampNanos;
+
+        private TcpConnection(SocketAddress remoteAddress, int clientPort) {
+            InetSocketAddress inetAddress = remoteAddress instanceof InetSocketAddress ? (InetSocketAddress) remoteAddress : null;
+            this.serverAddress = inetAddress != null && inetAddress.getAddress() instanceof Inet4Address
+                    ? inetAddress.getAddress().getAddress()
+                    : SYNTHETIC_SERVER_ADDRESS;
+            this.serverPort = inetAddress != null ? inetAddress.getPort() : 443;
+            this.clientPort = clientPort;
+        }
+    }
+}
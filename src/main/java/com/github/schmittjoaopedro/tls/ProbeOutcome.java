@@ -0,0 +1,20 @@
+package com.github.schmittjoaopedro.tls;
+
+public enum ProbeOutcome {
+
+    ACCEPTED("accepted"),
+    REJECTED("rejected"),
+    PRUNED("not probed"),
+    CLIENT_UNSUPPORTED("not supported by this JVM"),
+    ERROR("error");
+
+    private final String displayName;
+
+    ProbeOutcome(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
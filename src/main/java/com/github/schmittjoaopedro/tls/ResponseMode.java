@@ -0,0 +1,68 @@
+package com.github.schmittjoaopedro.tls;
+
+/**
+ * How much of the HTTP response an analysis reads. Reading less than the whole body releases the connection early:
+ * the response is closed and the connection dropped instead of being drained.
+ */
+public final class ResponseMode {
+
+    public static final int UNLIMITED = -1;
+
+    /**
+     * Status line and headers only, the body is never read.
+     */
+    public static final ResponseMode STATUS_ONLY = new ResponseMode(Kind.STATUS_ONLY, 0);
+
+    /**
+     * The whole body, decoded into the report.
+     */
+    public static final ResponseMode FULL_BODY = new ResponseMode(Kind.BODY, UNLIMITED);
+
+    /**
+     * The whole body read through a fixed buffer and discarded, to time the download whatever its size.
+     */
+    public static final ResponseMode DRAIN = new ResponseMode(Kind.DRAIN, UNLIMITED);
+
+    public enum Kind {
+        STATUS_ONLY,
+        BODY,
+        DRAIN
+    }
+
+    private final Kind kind;
+    private final int maxBodyBytes;
+
+    private ResponseMode(Kind kind, int maxBodyBytes) {
+        this.kind = kind;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    /**
+     * At most {@code maxBodyBytes} of the body, decoded into the report.
+     */
+    public static ResponseMode firstBytes(int maxBodyBytes) {
+        if (maxBodyBytes < 0) {
+            throw new IllegalArgumentException("maxBodyBytes must not be negative: " + maxBodyBytes);
+        }
+        return new ResponseMode(Kind.BODY, maxBodyBytes);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the body bytes kept, or {@link #UNLIMITED}
+     */
+    public int getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "ResponseMode{" +
+                "kind=" + kind +
+                ", maxBodyBytes=" + maxBodyBytes +
+                '}';
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.schmittjoaopedro.tls;
+
+/**
+ * The HTTP response of an analysis, read as its {@link ResponseMode} asked. Durations are measured from the call that
+ * sent the request, connection and handshake included; the handshake timings of the connection break that part down.
+ */
+public class ResponseResult {
+
+    private final ResponseMode mode;
+    private final int status;
+    private final String body;
+    private final long bodyBytes;
+    private final boolean truncated;
+    private final long headersNanos;
+    private final long firstByteNanos;
+    private final long downloadNanos;
+    private final String error;
+
+    ResponseResult(ResponseMode mode, int status, String body, long bodyBytes, boolean truncated, long headersNanos,
+                   long firstByteNanos, long downloadNanos, String error) {
+        this.mode = mode;
+        this.status = status;
+        this.body = body;
+        this.bodyBytes = bodyBytes;
+        this.truncated = truncated;
+        this.headersNanos = headersNanos;
+        this.firstByteNanos = firstByteNanos;
+        this.downloadNanos = downloadNanos;
+        this.error = error;
+    }
+
+    public ResponseMode getMode() {
+        return mode;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the body read, decoded with the response charset; null when the mode doesn't keep it
+     */
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return bytes of the body read, whether kept or drained
+     */
+    public long getBodyBytes() {
+        return bodyBytes;
+    }
+
+    /**
+     * @return whether the body went on past what the mode reads
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return time until the status line and headers were parsed
+     */
+    public long getHeadersNanos() {
+        return headersNanos;
+    }
+
+    /**
+     * @return time until the first body byte was read, -1 when none was
+     */
+    public long getFirstByteNanos() {
+        return firstByteNanos;
+    }
+
+    /**
+     * @return time from the headers to the last body byte read, -1 when the body wasn't read
+     */
+    public long getDownloadNanos() {
+        return downloadNanos;
+    }
+
+    /**
+     * @return body bytes per second over {@link #getDownloadNanos()}, 0 when nothing was downloaded
+     */
+    public double getThroughputBytesPerSecond() {
+        return downloadNanos > 0 ? bodyBytes * 1e9 / downloadNanos : 0;
+    }
+
+    /**
+     * @return why the body couldn't be read, null when it could
+     */
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,252 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.conn.ssl.SSLContexts;
+
+import javax.net.ssl.SSLContext;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of trust-material SSLContexts keyed by truststore path, type, password digest and protocol. Keeping the
+ * context also keeps its client session cache warm between analyses. Truststores resolved to a plain file are reloaded
+ * when the file's modification time or size changes; classpath entries inside jars are loaded once.
+ * <p>
+ * The lock only guards the LRU order: truststores are stat'ed before taking it and parsed after releasing it, once per
+ * key, so a slow truststore only holds back the callers waiting for that same context.
+ */
+public class SSLContextCache {
+
+    private final int maxSize;
+    private final LinkedHashMap<Key, CachedContext> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public SSLContextCache(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<Key, CachedContext>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedContext> eldest) {
+                if (size() > SSLContextCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public SSLContext getSSLContext(String trustStorePath, String trustStoreType, String trustStorePassword, String protocol)
+            throws GeneralSecurityException, IOException {
+        Key key = new Key(trustStorePath, trustStoreType, digest(trustStorePassword), StringUtils.isBlank(protocol) ? null : protocol);
+        // stat outside the lock, a slow file system must not hold back lookups of other keys
+        File trustStoreFile = resolveFile(trustStorePath);
+        long lastModified = trustStoreFile != null ? trustStoreFile.lastModified() : 0;
+        long length = trustStoreFile != null ? trustStoreFile.length() : 0;
+        CachedContext cached;
+        boolean load = false;
+        synchronized (entries) {
+            cached = entries.get(key);
+            if (cached != null && cached.isCurrent(lastModified, length)) {
+                hits.incrementAndGet();
+            } else {
+                if (cached == null) {
+                    misses.incrementAndGet();
+                } else {
+                    reloads.incrementAndGet();
+                }
+                cached = new CachedContext(lastModified, length);
+                entries.put(key, cached);
+                load = true;
+            }
+        }
+        if (load) {
+            // the truststore is parsed by the first caller only, concurrent callers of the same key wait for it below
+            // while other keys are served meanwhile
+            try {
+                cached.sslContext.complete(createSSLContext(trustStorePath, trustStoreType, trustStorePassword, key.protocol));
+            } catch (GeneralSecurityException | IOException | RuntimeException ex) {
+                synchronized (entries) {
+                    entries.remove(key, cached);
+                }
+                cached.sslContext.completeExceptionally(ex);
+            }
+        }
+        return await(cached.sslContext);
+    }
+
+    /**
+     * Builds a context that is not cached, for callers that need a session cache nobody else touches.
+     */
+    public SSLContext newSSLContext(String trustStorePath, String trustStoreType, String trustStorePassword, String protocol)
+            throws GeneralSecurityException, IOException {
+        return createSSLContext(trustStorePath, trustStoreType, trustStorePassword, StringUtils.isBlank(protocol) ? null : protocol);
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getReloadCount() {
+        return reloads.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private static SSLContext await(CompletableFuture<SSLContext> sslContext) throws GeneralSecurityException, IOException {
+        try {
+            return sslContext.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for SSLContext");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof GeneralSecurityException) {
+                throw (GeneralSecurityException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private SSLContext createSSLContext(String trustStorePath, String trustStoreType, String trustStorePassword, String protocol)
+            throws GeneralSecurityException, IOException {
+        KeyStore keyStore = KeyStore.getInstance(trustStoreType);
+        try (InputStream trustStoreStream = openTrustStore(trustStorePath)) {
+            keyStore.load(trustStoreStream, trustStorePassword != null ? trustStorePassword.toCharArray() : null);
+        }
+        return SSLContexts.custom()
+                .loadTrustMaterial(keyStore)
+                .useProtocol(protocol)
+                .build();
+    }
+
+    private InputStream openTrustStore(String trustStorePath) throws IOException {
+        InputStream resource = getClass().getClassLoader().getResourceAsStream(trustStorePath);
+        if (resource != null) {
+            return resource;
+        }
+        File file = new File(trustStorePath);
+        if (file.isFile()) {
+            return new FileInputStream(file);
+        }
+        throw new FileNotFoundException("Truststore not found on classpath or file system: " + trustStorePath);
+    }
+
+    private File resolveFile(String trustStorePath) {
+        URL resource = getClass().getClassLoader().getResource(trustStorePath);
+        if (resource != null) {
+            if (!"file".equals(resource.getProtocol())) {
+                return null;
+            }
+            try {
+                return new File(resource.toURI());
+            } catch (URISyntaxException | IllegalArgumentException ex) {
+                return null;
+            }
+        }
+        File file = new File(trustStorePath);
+        return file.isFile() ? file : null;
+    }
+
+    private static String digest(String password) throws GeneralSecurityException {
+        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+        return ConversionUtils.byteArrayToHex(messageDigest.digest(StringUtils.defaultString(password).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static class CachedContext {
+
+        private final CompletableFuture<SSLContext> sslContext = new CompletableFuture<>();
+        private final long lastModified;
+        private final long length;
+
+        private CachedContext(long lastModified, long length) {
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        private boolean isCurrent(long lastModified, long length) {
+            return this.lastModified == lastModified && this.length == length;
+        }
+    }
+
+    private static class Key {
+
+        private final String trustStorePath;
+        private final String trustStoreType;
+        private final String passwordDigest;
+        private final String protocol;
+
+        private Key(String trustStorePath, String trustStoreType, String passwordDigest, String protocol) {
+            this.trustStorePath = trustStorePath;
+            this.trustStoreType = trustStoreType;
+            this.passwordDigest = passwordDigest;
+            this.protocol = protocol;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return Objects.equals(trustStorePath, key.trustStorePath)
+                    && Objects.equals(trustStoreType, key.trustStoreType)
+                    && Objects.equals(passwordDigest, key.passwordDigest)
+                    && Objects.equals(protocol, key.protocol);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(trustStorePath, trustStoreType, passwordDigest, protocol);
+        }
+    }
+}
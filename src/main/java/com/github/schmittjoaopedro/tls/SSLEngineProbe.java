@@ -0,0 +1,453 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.apache.commons.lang3.StringUtils;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handshake-only diagnostics on {@link SSLEngine} over non-blocking channels, as an alternative to the blocking
+ * HttpClient path of {@link TLSSnifferService}: a few selector threads drive thousands of handshakes at once. The
+ * network buffers are captured straight from their backing arrays as they are wrapped and read, into the same
+ * {@link PacketCaptureSession} model, and reported with the session, timings and records sections of the detailed
+ * diagnostic.
+ * <p>
+ * Delegated engine tasks run on the selector thread, and host names are resolved by the thread calling
+ * {@link #probe(AnalysisTarget)}. Results are built and reports rendered on the common fork-join pool.
+ */
+public class SSLEngineProbe implements Closeable {
+
+    private final TLSSnifferService snifferService;
+    private final int timeoutMillis;
+    private final ProbeLoop[] probeLoops;
+    private final AtomicInteger nextProbeLoop = new AtomicInteger();
+
+    /**
+     * @param timeoutMillis bound of connect plus handshake, 0 for none
+     */
+    public SSLEngineProbe(TLSSnifferService snifferService, int selectorThreads, int timeoutMillis) throws IOException {
+        if (selectorThreads < 1) {
+            throw new IllegalArgumentException("selectorThreads must be at least 1");
+        }
+        this.snifferService = snifferService;
+        this.timeoutMillis = timeoutMillis;
+        this.probeLoops = new ProbeLoop[selectorThreads];
+        for (int i = 0; i < selectorThreads; i++) {
+            probeLoops[i] = new ProbeLoop("tls-probe-" + (i + 1));
+        }
+    }
+
+    /**
+     * @return the analysis report, which holds the failure when the handshake doesn't complete
+     */
+    public CompletableFuture<String> probe(AnalysisTarget target) {
+        return analyze(target).thenApply(analysisResult -> {
+            try {
+                return analysisResult.toText();
+            } finally {
+                analysisResult.release();
+            }
+        });
+    }
+
+    /**
+     * @return the result of the handshake, failed rather than exceptional when the handshake doesn't complete
+     */
+    public CompletableFuture<AnalysisResult> analyze(AnalysisTarget target) {
+        PacketsSniffer packetsSniffer = snifferService.newPacketsSniffer(target.isLogHandshake());
+        return handshake(target, packetsSniffer).handleAsync((captureSession, failure) ->
+                snifferService.newProbeResult(target, packetsSniffer, unwrap(failure)));
+    }
+
+    /**
+     * Completes on the selector thread with the capture of the handshake, registered in {@code packetsSniffer}. The
+     * host name is resolved, and the SSLContext fetched, by the calling thread.
+     */
+    CompletableFuture<PacketCaptureSession> handshake(AnalysisTarget target, PacketsSniffer packetsSniffer) {
+        try {
+            URI uri = URI.create(target.getUrl());
+            return handshake(target, new InetSocketAddress(uri.getHost(), port(uri)),
+                    snifferService.getSSLContext(target.getProtocol()), packetsSniffer);
+        } catch (Exception ex) {
+            CompletableFuture<PacketCaptureSession> handshake = new CompletableFuture<>();
+            handshake.completeExceptionally(ex);
+            return handshake;
+        }
+    }
+
+    /**
+     * Like {@link #handshake(AnalysisTarget, PacketsSniffer)} with the address already resolved and the context
+     * already fetched, so the calling thread never blocks.
+     */
+    CompletableFuture<PacketCaptureSession> handshake(AnalysisTarget target, InetSocketAddress remoteAddress,
+                                                      SSLContext sslContext, PacketsSniffer packetsSniffer) {
+        CompletableFuture<PacketCaptureSession> handshake;
+        try {
+            PacketCaptureSession captureSession = packetsSniffer.openCaptureSession();
+            ProbeConnection connection = createConnection(target, remoteAddress, sslContext, captureSession);
+            probeLoops[Math.floorMod(nextProbeLoop.getAndIncrement(), probeLoops.length)].register(connection);
+            handshake = connection.handshake.thenApply(ignored -> captureSession);
+        } catch (Exception ex) {
+            handshake = new CompletableFuture<>();
+            handshake.completeExceptionally(ex);
+        }
+        return handshake;
+    }
+
+    private ProbeConnection createConnection(AnalysisTarget target, InetSocketAddress remoteAddress, SSLContext sslContext,
+                                             PacketCaptureSession captureSession) {
+        URI uri = URI.create(target.getUrl());
+        // the peer host enables SNI
+        SSLEngine engine = sslContext.createSSLEngine(uri.getHost(), port(uri));
+        engine.setUseClientMode(true);
+        SSLParameters sslParameters = engine.getSSLParameters();
+        sslParameters.setEndpointIdentificationAlgorithm("HTTPS");
+        if (StringUtils.isNotBlank(target.getProtocol())) {
+            sslParameters.setProtocols(new String[]{target.getProtocol()});
+        } else if (StringUtils.isNotBlank(System.getProperty("https.protocols"))) {
+            sslParameters.setProtocols(System.getProperty("https.protocols").split(","));
+        }
+        if (StringUtils.isNotBlank(target.getCipher())) {
+            sslParameters.setCipherSuites(new String[]{target.getCipher()});
+        }
+        engine.setSSLParameters(sslParameters);
+        long deadlineNanos = timeoutMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : 0;
+        return new ProbeConnection(remoteAddress, engine, captureSession, deadlineNanos);
+    }
+
+    static int port(URI uri) {
+        return uri.getPort() > 0 ? uri.getPort() : 443;
+    }
+
+    static Throwable unwrap(Throwable failure) {
+        // handleAsync sees the failures of the engine wrapped
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    /**
+     * Stops the selector threads; probes still in flight fail.
+     */
+    @Override
+    public void close() {
+        for (ProbeLoop probeLoop : probeLoops) {
+            probeLoop.shutdown();
+        }
+    }
+
+    /**
+     * One selector thread. Connections are handed over through a queue; all later work on them happens on this
+     * thread, so they need no locking.
+     */
+    private static class ProbeLoop implements Runnable {
+
+        private final Selector selector;
+        private final Queue<ProbeConnection> pendingConnections = new ConcurrentLinkedQueue<>();
+        // same timeout for every probe, so registration order is deadline order
+        private final ArrayDeque<ProbeConnection> deadlines = new ArrayDeque<>();
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        private ProbeLoop(String name) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void register(ProbeConnection connection) {
+            if (!running) {
+                connection.fail(new IOException("SSLEngine probe closed"));
+                return;
+            }
+            pendingConnections.add(connection);
+            selector.wakeup();
+        }
+
+        void shutdown() {
+            running = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    startPendingConnections();
+                    selector.select(millisToNextDeadline());
+                    Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                    while (selectedKeys.hasNext()) {
+                        SelectionKey key = selectedKeys.next();
+                        selectedKeys.remove();
+                        ((ProbeConnection) key.attachment()).onReady(key);
+                    }
+                    expireConnections();
+                }
+            } catch (IOException | ClosedSelectorException ex) {
+                // selector unusable, in-flight probes fail below
+            } finally {
+                IOException closed = new IOException("SSLEngine probe closed");
+                ProbeConnection connection;
+                while ((connection = pendingConnections.poll()) != null) {
+                    connection.fail(closed);
+                }
+                for (SelectionKey key : selector.keys()) {
+                    ((ProbeConnection) key.attachment()).fail(closed);
+                }
+                try {
+                    selector.close();
+                } catch (IOException ex) {
+                    // nothing left to release
+                }
+            }
+        }
+
+        private void startPendingConnections() {
+            ProbeConnection connection;
+            while ((connection = pendingConnections.poll()) != null) {
+                connection.start(selector);
+                if (connection.deadlineNanos != 0) {
+                    deadlines.add(connection);
+                }
+            }
+        }
+
+        private long millisToNextDeadline() {
+            ProbeConnection connection;
+            while ((connection = deadlines.peek()) != null && connection.handshake.isDone()) {
+                deadlines.poll();
+            }
+            if (connection == null) {
+                return 0;
+            }
+            // select(0) blocks forever
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(connection.deadlineNanos - System.nanoTime()) + 1);
+        }
+
+        private void expireConnections() {
+            long now = System.nanoTime();
+            ProbeConnection connection;
+            while ((connection = deadlines.peek()) != null && (connection.handshake.isDone() || now - connection.deadlineNanos >= 0)) {
+                deadlines.poll();
+                connection.fail(new SocketTimeoutException("Handshake with " + connection.remoteAddress + " timed out"));
+            }
+        }
+    }
+
+    /**
+     * Connect and handshake state of one probe, driven by its selector thread.
+     */
+    private static class ProbeConnection {
+
+        private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+        private final InetSocketAddress remoteAddress;
+        private final SSLEngine engine;
+        private final PacketCaptureSession captureSession;
+        private final long deadlineNanos;
+        private final CompletableFuture<Void> handshake = new CompletableFuture<>();
+
+        // heap buffers, so captures read their backing arrays
+        private final ByteBuffer netOut;
+        private final ByteBuffer netIn;
+        private final ByteBuffer appIn;
+        private SocketChannel channel;
+        private SelectionKey key;
+
+        private ProbeConnection(InetSocketAddress remoteAddress, SSLEngine engine, PacketCaptureSession captureSession, long deadlineNanos) {
+            this.remoteAddress = remoteAddress;
+            this.engine = engine;
+            this.captureSession = captureSession;
+            this.deadlineNanos = deadlineNanos;
+            this.netOut = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+            this.netIn = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+            this.appIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+        }
+
+        void start(Selector selector) {
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+                captureSession.markConnectStarted(remoteAddress);
+                if (channel.connect(remoteAddress)) {
+                    onConnected();
+                }
+            } catch (Exception ex) {
+                fail(ex);
+            }
+        }
+
+        void onReady(SelectionKey readyKey) {
+            try {
+                if (readyKey.isConnectable()) {
+                    channel.finishConnect();
+                    onConnected();
+                } else {
+                    progress();
+                }
+            } catch (Exception ex) {
+                fail(ex);
+            }
+        }
+
+        private void onConnected() throws IOException {
+            captureSession.markConnectCompleted();
+            captureSession.markHandshakeStarted();
+            engine.beginHandshake();
+            progress();
+        }
+
+        /**
+         * Runs the handshake until it needs the network, then waits for the selector.
+         */
+        private void progress() throws IOException {
+            while (true) {
+                if (captureSession.isAbortRequested()) {
+                    throw new CaptureAbortedException("Capture session " + captureSession.getId() + " aborted");
+                }
+                if (netOut.position() > 0 && !flush()) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                switch (engine.getHandshakeStatus()) {
+                    case NEED_WRAP:
+                        wrap();
+                        break;
+                    case NEED_TASK:
+                        Runnable task;
+                        while ((task = engine.getDelegatedTask()) != null) {
+                            task.run();
+                        }
+                        break;
+                    case FINISHED:
+                    case NOT_HANDSHAKING:
+                        complete();
+                        return;
+                    default:
+                        if (!unwrap()) {
+                            key.interestOps(SelectionKey.OP_READ);
+                            return;
+                        }
+                }
+            }
+        }
+
+        private void wrap() throws IOException {
+            int start = netOut.position();
+            SSLEngineResult result = engine.wrap(EMPTY, netOut);
+            if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+                throw new SSLException("Handshake message larger than the packet buffer");
+            }
+            captureSession.captureOutput(netOut.array(), netOut.arrayOffset() + start, netOut.position() - start);
+            if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+                throw new SSLException("Engine closed during the handshake");
+            }
+        }
+
+        /**
+         * @return false when more network bytes are needed and none are available yet
+         */
+        private boolean unwrap() throws IOException {
+            netIn.flip();
+            SSLEngineResult result;
+            try {
+                result = engine.unwrap(netIn, appIn);
+            } finally {
+                netIn.compact();
+            }
+            switch (result.getStatus()) {
+                case BUFFER_UNDERFLOW:
+                    return read();
+                case BUFFER_OVERFLOW:
+                    // application data before the handshake ends is not part of the diagnostic
+                    appIn.clear();
+                    return true;
+                case CLOSED:
+                    throw new SSLException("Peer closed the TLS connection during the handshake");
+                default:
+                    return true;
+            }
+        }
+
+        private boolean read() throws IOException {
+            int start = netIn.position();
+            int read = channel.read(netIn);
+            if (read < 0) {
+                throw new EOFException("Connection closed by peer during the handshake");
+            }
+            if (read > 0) {
+                captureSession.captureInput(netIn.array(), netIn.arrayOffset() + start, read);
+            }
+            return read > 0;
+        }
+
+        /**
+         * @return true once every pending network byte is written
+         */
+        private boolean flush() throws IOException {
+            netOut.flip();
+            try {
+                channel.write(netOut);
+            } finally {
+                netOut.compact();
+            }
+            return netOut.position() == 0;
+        }
+
+        private void complete() {
+            captureSession.markHandshakeCompleted(engine.getSession());
+            // best effort close_notify, the channel is non-blocking
+            engine.closeOutbound();
+            try {
+                wrap();
+                flush();
+            } catch (IOException ex) {
+                // the handshake already succeeded
+            }
+            close();
+            handshake.complete(null);
+        }
+
+        void fail(Throwable failure) {
+            if (!handshake.isDone()) {
+                close();
+                handshake.completeExceptionally(failure);
+            }
+        }
+
+        private void close() {
+            if (key != null) {
+                key.cancel();
+            }
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    // already closed
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.schmittjoaopedro.tls;
+
+/**
+ * Keeps the body of the last ServerHello received and decodes the negotiated version, cipher suite and extensions.
+ * A TLS 1.3 HelloRetryRequest is replaced by the ServerHello that follows it.
+ */
+class ServerHelloCapture implements TLSRecordListener {
+
+    static final int EXTENSION_PRE_SHARED_KEY = 41;
+    static final int EXTENSION_SUPPORTED_VERSIONS = 43;
+
+    private static final int MAX_SERVER_HELLO_LENGTH = 1024;
+
+    private final byte[] serverHello = new byte[MAX_SERVER_HELLO_LENGTH];
+    private final Runnable completionCallback;
+    private int serverHelloLength;
+    private int serverHelloPosition;
+    private boolean serverHelloSeen;
+
+    ServerHelloCapture() {
+        this(null);
+    }
+
+    /**
+     * @param completionCallback run on the I/O thread once a ServerHello body has been fully received
+     */
+    ServerHelloCapture(Runnable completionCallback) {
+        this.completionCallback = completionCallback;
+    }
+
+    @Override
+    public synchronized void onHandshakeMessage(boolean output, int handshakeType, int length) {
+        if (!output && handshakeType == TLSHandshakeType.SERVER_HELLO.getCode()) {
+            serverHelloSeen = true;
+            serverHelloLength = Math.min(length, MAX_SERVER_HELLO_LENGTH);
+            serverHelloPosition = 0;
+            notifyIfComplete();
+        }
+    }
+
+    @Override
+    public synchronized void onHandshakeBody(boolean output, int handshakeType, byte[] b, int off, int len) {
+        if (!output && handshakeType == TLSHandshakeType.SERVER_HELLO.getCode() && serverHelloPosition < serverHelloLength) {
+            int count = Math.min(len, serverHelloLength - serverHelloPosition);
+            System.arraycopy(b, off, serverHello, serverHelloPosition, count);
+            serverHelloPosition += count;
+            notifyIfComplete();
+        }
+    }
+
+    private void notifyIfComplete() {
+        if (completionCallback != null && isComplete()) {
+            completionCallback.run();
+        }
+    }
+
+    synchronized boolean isSeen() {
+        return serverHelloSeen;
+    }
+
+    synchronized boolean isComplete() {
+        return serverHelloSeen && serverHelloPosition == serverHelloLength;
+    }
+
+    /**
+     * @return the negotiated protocol version, from supported_versions when present, or -1 before a ServerHello
+     */
+    synchronized int getVersion() {
+        if (serverHelloPosition < 2) {
+            return -1;
+        }
+        int supportedVersion = findExtension(EXTENSION_SUPPORTED_VERSIONS);
+        return supportedVersion > 0 ? supportedVersion : readShort(0);
+    }
+
+    /**
+     * @return the selected cipher suite code, or -1 before a ServerHello
+     */
+    synchronized int getCipherSuite() {
+        int position = cipherSuiteOffset();
+        return position > 0 && serverHelloPosition >= position + 2 ? readShort(position) : -1;
+    }
+
+    synchronized boolean hasExtension(int extensionType) {
+        return findExtension(extensionType) >= 0;
+    }
+
+    private int cipherSuiteOffset() {
+        // version(2) random(32) session_id(1 + n) cipher_suite(2) compression(1) extensions(2 + n)
+        int position = 34;
+        if (serverHelloPosition <= position) {
+            return -1;
+        }
+        return position + 1 + (serverHello[position] & 0xff);
+    }
+
+    /**
+     * @return the first two bytes of the extension data, 0 for shorter data, or -1 when the extension is absent
+     */
+    private int findExtension(int extensionType) {
+        int position = cipherSuiteOffset();
+        if (position < 0 || serverHelloPosition < position + 5) {
+            return -1;
+        }
+        position += 3;
+        int end = Math.min(serverHelloPosition, position + 2 + readShort(position));
+        position += 2;
+        while (position + 4 <= end) {
+            int type = readShort(position);
+            int length = readShort(position + 2);
+            position += 4;
+            if (type == extensionType) {
+                return length >= 2 && position + 2 <= end ? readShort(position) : 0;
+            }
+            position += length;
+        }
+        return -1;
+    }
+
+    private int readShort(int position) {
+        return ((serverHello[position] & 0xff) << 8) | (serverHello[position + 1] & 0xff);
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHost;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+
+/**
+ * Opens N sequential connections to one endpoint with a single, fresh SSLContext and classifies every handshake as
+ * full or resumed, to measure what the endpoint's session cache or tickets save in latency, bytes and client CPU.
+ * Latency, bytes and CPU cover the handshake only. Each connection then sends a HEAD request and drains the answer,
+ * which is when TLS 1.3 clients receive the session tickets needed by the next connection.
+ */
+public class SessionResumptionBenchmark {
+
+    private final TLSSnifferService snifferService;
+    private final int timeoutMillis;
+
+    public SessionResumptionBenchmark(TLSSnifferService snifferService, int timeoutMillis) {
+        this.snifferService = snifferService;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public SessionResumptionReport run(String url, String protocol, String cipher, int connections)
+            throws GeneralSecurityException, IOException {
+        URI uri = URI.create(url);
+        HttpHost host = new HttpHost(uri.getHost(), uri.getPort() > 0 ? uri.getPort() : 443, "https");
+        // a context of its own, so sessions cached by earlier analyses don't count as resumed
+        SSLContext sslContext = snifferService.newSSLContext(protocol);
+        PacketsSniffer packetsSniffer = new PacketsSniffer();
+        PacketsSnifferConnectionManager connectionManager = new PacketsSnifferConnectionManager(
+                packetsSniffer,
+                sslContext,
+                StringUtils.isBlank(protocol) ? null : new String[]{protocol},
+                StringUtils.isBlank(cipher) ? null : new String[]{cipher});
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        boolean cpuTimeSupported = threadMXBean.isCurrentThreadCpuTimeSupported();
+        SessionResumptionReport report = new SessionResumptionReport(host.toHostString());
+        try {
+            for (int i = 0; i < connections; i++) {
+                long cpuStart = cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : 0;
+                HandshakeResumptionDetector resumptionDetector = new HandshakeResumptionDetector();
+                packetsSniffer.addRecordListener(resumptionDetector);
+                Socket socket = null;
+                try {
+                    socket = connectionManager.openSecureSocket(host, new InetSocketAddress(host.getHostName(), host.getPort()), timeoutMillis);
+                } catch (IOException ex) {
+                    // counted as failed below
+                } finally {
+                    packetsSniffer.removeRecordListener(resumptionDetector);
+                }
+                long cpuTime = cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() - cpuStart : 0;
+                recordConnection(report, packetsSniffer, socket != null ? resumptionDetector.getHandshakeKind() : HandshakeKind.FAILED, cpuTime);
+                if (socket != null) {
+                    drainHeadRequest(socket, host);
+                }
+                packetsSniffer.recycle();
+            }
+        } finally {
+            connectionManager.shutdown();
+        }
+        return report;
+    }
+
+    private void drainHeadRequest(Socket socket, HttpHost host) {
+        try (Socket secureSocket = socket) {
+            OutputStream out = secureSocket.getOutputStream();
+            out.write(("HEAD / HTTP/1.1\r\nHost: " + host.toHostString() + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = secureSocket.getInputStream();
+            byte[] buffer = new byte[4096];
+            while (in.read(buffer) != -1) {
+                // discard, only the post-handshake messages matter
+            }
+        } catch (IOException ex) {
+            // the handshake already succeeded, a failing request doesn't change its classification
+        }
+    }
+
+    private void recordConnection(SessionResumptionReport report, PacketsSniffer packetsSniffer,
+                                  HandshakeKind kind, long cpuTime) {
+        for (PacketCaptureSession captureSession : packetsSniffer.getCaptureSessions()) {
+            SSLSession sslSession = captureSession.getSSLSession();
+            PacketCaptureBuffer captureBuffer = captureSession.getCaptureBuffer();
+            synchronized (captureSession) {
+                report.record(kind,
+                        sslSession != null ? ConversionUtils.byteArrayToHex(sslSession.getId()) : null,
+                        captureSession.getHandshakeTimings().getDurationNanos(HandshakePhase.HANDSHAKE),
+                        captureBuffer.getSize(true),
+                        captureBuffer.getSize(false),
+                        cpuTime);
+            }
+        }
+    }
+}
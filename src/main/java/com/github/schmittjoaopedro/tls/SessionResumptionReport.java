@@ -0,0 +1,117 @@
+package com.github.schmittjoaopedro.tls;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Outcome of a {@link SessionResumptionBenchmark}: handshake count, latency, bytes on the wire and client CPU per
+ * {@link HandshakeKind}.
+ */
+public class SessionResumptionReport {
+
+    private final String target;
+    private final long[] counts = new long[HandshakeKind.values().length];
+    private final long[] outputBytes = new long[HandshakeKind.values().length];
+    private final long[] inputBytes = new long[HandshakeKind.values().length];
+    private final long[] cpuNanos = new long[HandshakeKind.values().length];
+    private final LatencyHistogram[] latencies = new LatencyHistogram[HandshakeKind.values().length];
+    private final Set<String> sessionIds = new HashSet<>();
+
+    SessionResumptionReport(String target) {
+        this.target = target;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    void record(HandshakeKind kind, String sessionId, long handshakeNanos, long sentBytes, long receivedBytes, long cpuTimeNanos) {
+        int index = kind.ordinal();
+        counts[index]++;
+        outputBytes[index] += sentBytes;
+        inputBytes[index] += receivedBytes;
+        cpuNanos[index] += cpuTimeNanos;
+        if (handshakeNanos >= 0) {
+            latencies[index].record(handshakeNanos);
+        }
+        if (sessionId != null) {
+            sessionIds.add(sessionId);
+        }
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public long getCount(HandshakeKind kind) {
+        return counts[kind.ordinal()];
+    }
+
+    public LatencyHistogram getLatency(HandshakeKind kind) {
+        return latencies[kind.ordinal()];
+    }
+
+    public double getAverageOutputBytes(HandshakeKind kind) {
+        return average(outputBytes[kind.ordinal()], kind);
+    }
+
+    public double getAverageInputBytes(HandshakeKind kind) {
+        return average(inputBytes[kind.ordinal()], kind);
+    }
+
+    public double getAverageCpuNanos(HandshakeKind kind) {
+        return average(cpuNanos[kind.ordinal()], kind);
+    }
+
+    public int getDistinctSessionIds() {
+        return sessionIds.size();
+    }
+
+    /**
+     * @return resumed handshakes over successful handshakes, between 0 and 1
+     */
+    public double getResumptionRate() {
+        long successful = getCount(HandshakeKind.FULL) + getCount(HandshakeKind.RESUMED);
+        return successful == 0 ? 0 : (double) getCount(HandshakeKind.RESUMED) / successful;
+    }
+
+    private double average(long total, HandshakeKind kind) {
+        long count = counts[kind.ordinal()];
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    public void appendTo(Appendable out) throws IOException {
+        out.append("---------------------------\n");
+        out.append("TLS session resumption benchmark\n");
+        out.append("Target: " + target + "\n");
+        out.append("Resumption rate: " + String.format(Locale.ROOT, "%.1f%%", getResumptionRate() * 100) + "\n");
+        out.append("Distinct session IDs: " + getDistinctSessionIds() + "\n");
+        for (HandshakeKind kind : HandshakeKind.values()) {
+            if (getCount(kind) == 0) {
+                continue;
+            }
+            LatencyHistogram latency = getLatency(kind);
+            out.append(kind.getDisplayName() + " handshakes: " + getCount(kind) + "\n");
+            out.append("\tLatency p50/p90/max: " + HandshakeLatencyStats.millis(latency.getPercentileNanos(50)) + " / "
+                    + HandshakeLatencyStats.millis(latency.getPercentileNanos(90)) + " / "
+                    + HandshakeLatencyStats.millis(latency.getMaxNanos()) + " ms\n");
+            out.append("\tAverage bytes sent/received: " + Math.round(getAverageOutputBytes(kind)) + " / "
+                    + Math.round(getAverageInputBytes(kind)) + "\n");
+            out.append("\tAverage client CPU: " + HandshakeLatencyStats.millis(getAverageCpuNanos(kind)) + " ms\n");
+        }
+        out.append("\n");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        try {
+            appendTo(report);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.schmittjoaopedro.tls;
+
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs {@link TLSSnifferService} analyses for many targets at once. Targets share the SSLContexts of the service's
+ * {@link SSLContextCache}, so the truststore is parsed once per protocol; at most {@code parallelism} targets are in flight.
+ * Virtual threads are used when the running JDK provides them, a fixed pool otherwise.
+ * <p>
+ * The per-target timeout is applied to connect, handshake and response reads, so a dead endpoint is released after
+ * roughly that many milliseconds of inactivity instead of holding a slot forever.
+ */
+public class TLSBatchAnalyzer {
+
+    private final TLSSnifferService snifferService;
+    private final int parallelism;
+    private final int timeoutMillis;
+    private final ResponseMode responseMode;
+
+    public TLSBatchAnalyzer(TLSSnifferService snifferService, int parallelism, int timeoutMillis) {
+        this(snifferService, parallelism, timeoutMillis, ResponseMode.FULL_BODY);
+    }
+
+    /**
+     * @param responseMode how much of each response body to read
+     */
+    public TLSBatchAnalyzer(TLSSnifferService snifferService, int parallelism, int timeoutMillis, ResponseMode responseMode) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.snifferService = snifferService;
+        this.parallelism = parallelism;
+        this.timeoutMillis = timeoutMillis;
+        this.responseMode = responseMode;
+    }
+
+    public void analyze(List<AnalysisTarget> targets, BatchAnalysisListener listener) throws InterruptedException {
+        Semaphore permits = new Semaphore(parallelism);
+        ExecutorService executor = AnalysisExecutors.newExecutor("tls-analysis", parallelism);
+        try {
+            CompletionService<TargetAnalysis> completionService = new ExecutorCompletionService<>(executor);
+            for (final AnalysisTarget target : targets) {
+                completionService.submit(() -> {
+                    permits.acquire();
+                    try {
+                        long start = System.nanoTime();
+                        AnalysisResult analysisResult = snifferService.analyze(target, timeoutMillis, responseMode);
+                        return new TargetAnalysis(analysisResult, System.nanoTime() - start);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            for (int i = 0; i < targets.size(); i++) {
+                TargetAnalysis result;
+                try {
+                    result = completionService.take().get();
+                } catch (ExecutionException ex) {
+                    // analyze reports its own failures, anything reaching here is a programming error
+                    throw new IllegalStateException(ex.getCause());
+                }
+                listener.onAnalysisCompleted(result.analysisResult, result.elapsedNanos);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class TargetAnalysis {
+
+        private final AnalysisResult analysisResult;
+        private final long elapsedNanos;
+
+        private TargetAnalysis(AnalysisResult analysisResult, long elapsedNanos) {
+            this.analysisResult = analysisResult;
+            this.elapsedNanos = elapsedNanos;
+        }
+    }
+}
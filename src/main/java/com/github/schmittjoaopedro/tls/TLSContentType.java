@@ -0,0 +1,43 @@
+package com.github.schmittjoaopedro.tls;
+
+public enum TLSContentType {
+
+    CHANGE_CIPHER_SPEC(20, "ChangeCipherSpec"),
+    ALERT(21, "Alert"),
+    HANDSHAKE(22, "Handshake"),
+    APPLICATION_DATA(23, "ApplicationData"),
+    HEARTBEAT(24, "Heartbeat");
+
+    private static final TLSContentType[] BY_CODE = new TLSContentType[256];
+
+    static {
+        for (TLSContentType contentType : values()) {
+            BY_CODE[contentType.code] = contentType;
+        }
+    }
+
+    private final int code;
+    private final String displayName;
+
+    TLSContentType(int code, String displayName) {
+        this.code = code;
+        this.displayName = displayName;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public static TLSContentType fromCode(int code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    public static String nameOf(int code) {
+        TLSContentType contentType = fromCode(code);
+        return contentType != null ? contentType.displayName : "Unknown(" + code + ")";
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.schmittjoaopedro.tls;
+
+public enum TLSHandshakeType {
+
+    HELLO_REQUEST(0, "HelloRequest"),
+    CLIENT_HELLO(1, "ClientHello"),
+    SERVER_HELLO(2, "ServerHello"),
+    NEW_SESSION_TICKET(4, "NewSessionTicket"),
+    END_OF_EARLY_DATA(5, "EndOfEarlyData"),
+    ENCRYPTED_EXTENSIONS(8, "EncryptedExtensions"),
+    CERTIFICATE(11, "Certificate"),
+    SERVER_KEY_EXCHANGE(12, "ServerKeyExchange"),
+    CERTIFICATE_REQUEST(13, "CertificateRequest"),
+    SERVER_HELLO_DONE(14, "ServerHelloDone"),
+    CERTIFICATE_VERIFY(15, "CertificateVerify"),
+    CLIENT_KEY_EXCHANGE(16, "ClientKeyExchange"),
+    FINISHED(20, "Finished"),
+    CERTIFICATE_STATUS(22, "CertificateStatus"),
+    KEY_UPDATE(24, "KeyUpdate");
+
+    private static final TLSHandshakeType[] BY_CODE = new TLSHandshakeType[256];
+
+    static {
+        for (TLSHandshakeType handshakeType : values()) {
+            BY_CODE[handshakeType.code] = handshakeType;
+        }
+    }
+
+    private final int code;
+    private final String displayName;
+
+    TLSHandshakeType(int code, String displayName) {
+        this.code = code;
+        this.displayName = displayName;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public static TLSHandshakeType fromCode(int code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    public static String nameOf(int code) {
+        TLSHandshakeType handshakeType = fromCode(code);
+        return handshakeType != null ? handshakeType.displayName : "Unknown(" + code + ")";
+    }
+}
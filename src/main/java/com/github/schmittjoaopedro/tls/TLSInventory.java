@@ -0,0 +1,116 @@
+package com.github.schmittjoaopedro.tls;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import java.security.Provider;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * What the JVM offers whatever the target: the security providers with their SSLContext algorithms, and the protocols
+ * and cipher suites each SSLContext supports. Neither changes while the JVM runs, so both are computed and rendered
+ * once and shared by every report. Providers installed after the first analysis are not listed.
+ */
+public final class TLSInventory {
+
+    private static final Map<String, SupportedParameters> SUPPORTED_PARAMETERS = new ConcurrentHashMap<>();
+
+    private TLSInventory() {
+    }
+
+    /**
+     * @return provider description to the SSLContext algorithms it registers, in provider preference order
+     */
+    public static Map<String, List<String>> getSSLContextProviders() {
+        return Providers.SSL_CONTEXT_PROVIDERS;
+    }
+
+    static String getProvidersText() {
+        return Providers.TEXT;
+    }
+
+    /**
+     * Computed once per provider and protocol of the context, as every context they create supports the same.
+     */
+    public static SupportedParameters getSupportedParameters(SSLContext sslContext) {
+        String key = sslContext.getProvider().getName() + ":" + sslContext.getProtocol();
+        return SUPPORTED_PARAMETERS.computeIfAbsent(key, ignored -> new SupportedParameters(sslContext.getSupportedSSLParameters()));
+    }
+
+    private static class Providers {
+
+        private static final Map<String, List<String>> SSL_CONTEXT_PROVIDERS = loadProviders();
+        private static final String TEXT = render();
+
+        private static Map<String, List<String>> loadProviders() {
+            Map<String, List<String>> providers = new LinkedHashMap<>();
+            for (Provider provider : Security.getProviders()) {
+                List<String> algorithms = new ArrayList<>();
+                for (Provider.Service service : provider.getServices()) {
+                    if ("SSLContext".equals(service.getType())) {
+                        algorithms.add(service.getAlgorithm());
+                    }
+                }
+                providers.put(provider.toString(), Collections.unmodifiableList(algorithms));
+            }
+            return Collections.unmodifiableMap(providers);
+        }
+
+        private static String render() {
+            StringBuilder text = new StringBuilder();
+            text.append("---------------------------\n");
+            text.append("WebServer service providers\n");
+            for (Map.Entry<String, List<String>> provider : SSL_CONTEXT_PROVIDERS.entrySet()) {
+                text.append(provider.getKey()).append('\n');
+                for (String algorithm : provider.getValue()) {
+                    text.append("\tSSLContext.").append(algorithm).append('\n');
+                }
+            }
+            text.append('\n');
+            return text.toString();
+        }
+    }
+
+    public static final class SupportedParameters {
+
+        private final List<String> protocols;
+        private final List<String> cipherSuites;
+        private final String text;
+
+        private SupportedParameters(SSLParameters sslParameters) {
+            this.protocols = Collections.unmodifiableList(Arrays.asList(sslParameters.getProtocols()));
+            this.cipherSuites = Collections.unmodifiableList(Arrays.asList(sslParameters.getCipherSuites()));
+            StringBuilder text = new StringBuilder();
+            text.append("---------------------------\n");
+            text.append("Request TLS global information\n");
+            text.append("Supported protocols:\n");
+            for (String protocol : protocols) {
+                text.append('\t').append(protocol).append('\n');
+            }
+            text.append("Supported ciphers:\n");
+            for (String cipherSuite : cipherSuites) {
+                text.append('\t').append(cipherSuite).append('\n');
+            }
+            text.append('\n');
+            this.text = text.toString();
+        }
+
+        public List<String> getProtocols() {
+            return protocols;
+        }
+
+        public List<String> getCipherSuites() {
+            return cipherSuites;
+        }
+
+        String getText() {
+            return text;
+        }
+    }
+}
@@ -0,0 +1,522 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Probes a list of targets continuously over {@link SSLEngineProbe} and reports only what changes between two probes
+ * of the same target: availability, protocol, cipher suite, server certificate, or the handshake crossing the latency
+ * threshold. The first result of a target is its baseline and raises no event. Only the latest {@link MonitorResult}
+ * of each target is kept, plus its latest successful one while it fails, which is what a recovered target is compared
+ * with.
+ * <p>
+ * Each target is first probed at a random point of the interval, then every interval plus or minus
+ * {@value #JITTER_PERCENT}%, so probes spread evenly instead of bursting. A probe that would exceed the global or the
+ * per-host concurrency is postponed by a short random delay instead of blocking the scheduler thread.
+ * <p>
+ * Host names are resolved before a probe takes its permits, on threads of their own, at most {@code maxProbes} at
+ * once; a lookup still running after {@value #RESOLVE_TIMEOUT_MILLIS} ms fails its probe, and the target isn't looked
+ * up again until that lookup returns, so a hanging DNS lookup only delays its own target. The SSLContext of each
+ * protocol is fetched once for the life of the monitor.
+ * <p>
+ * Results are handled, and {@link MonitorListener} called, on {@link java.util.concurrent.ForkJoinPool#commonPool()}.
+ * <p>
+ * {@link #writeMetrics} renders the Prometheus text format, served over HTTP by {@link MonitorMetricsEndpoint}.
+ */
+public class TLSMonitor implements Closeable {
+
+    static final int JITTER_PERCENT = 10;
+    static final long RESOLVE_TIMEOUT_MILLIS = 5000;
+    private static final long RESOLVER_KEEP_ALIVE_SECONDS = 60;
+    private static final long MIN_POSTPONE_MILLIS = 50;
+    private static final long MAX_POSTPONE_MILLIS = 1000;
+    private static final double[] HANDSHAKE_BUCKETS_SECONDS = {0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private final TLSSnifferService snifferService;
+    private final SSLEngineProbe probe;
+    private final long intervalMillis;
+    private final int maxProbesPerHost;
+    private final long latencyThresholdNanos;
+    private final MonitorListener listener;
+    private final DnsResolver dnsResolver;
+    private final Semaphore globalPermits;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final Map<String, MonitoredTarget> targets = new ConcurrentHashMap<>();
+    private final Map<String, SSLContext> sslContexts = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor resolver;
+    private volatile boolean closed;
+
+    private final AtomicInteger probesInFlight = new AtomicInteger();
+    private final AtomicLong successfulProbes = new AtomicLong();
+    private final AtomicLong failedProbes = new AtomicLong();
+    private final AtomicLong postponedProbes = new AtomicLong();
+    private final AtomicLongArray changes = new AtomicLongArray(MonitorChange.values().length);
+    private final LatencyHistogram handshakeLatency = new LatencyHistogram();
+
+    /**
+     * @param maxProbes                 probes in flight at once over all targets
+     * @param maxProbesPerHost          probes in flight at once to the same host name, whatever the port
+     * @param latencyThresholdMillis    handshake duration above which a target is reported slow
+     * @param listener                  notified of every change
+     */
+    public TLSMonitor(TLSSnifferService snifferService, SSLEngineProbe probe, long intervalMillis, int maxProbes,
+                      int maxProbesPerHost, long latencyThresholdMillis, MonitorListener listener) {
+        this(snifferService, probe, intervalMillis, maxProbes, maxProbesPerHost, latencyThresholdMillis, listener,
+                SystemDefaultDnsResolver.INSTANCE);
+    }
+
+    /**
+     * @param dnsResolver resolves the target host names, the first address returned is probed
+     */
+    public TLSMonitor(TLSSnifferService snifferService, SSLEngineProbe probe, long intervalMillis, int maxProbes,
+                      int maxProbesPerHost, long latencyThresholdMillis, MonitorListener listener, DnsResolver dnsResolver) {
+        if (intervalMillis < 1) {
+            throw new IllegalArgumentException("Interval must be positive: " + intervalMillis);
+        }
+        if (maxProbes < 1 || maxProbesPerHost < 1) {
+            throw new IllegalArgumentException("Concurrency limits must be positive: " + maxProbes + ", " + maxProbesPerHost);
+        }
+        this.snifferService = snifferService;
+        this.probe = probe;
+        this.intervalMillis = intervalMillis;
+        this.maxProbesPerHost = maxProbesPerHost;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.listener = listener;
+        this.dnsResolver = dnsResolver;
+        this.globalPermits = new Semaphore(maxProbes);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tls-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger resolverThreads = new AtomicInteger();
+        // no queue, a lookup never waits behind hanging ones: when every thread is busy the probe is postponed
+        this.resolver = new ThreadPoolExecutor(0, maxProbes, RESOLVER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "tls-monitor-resolver-" + resolverThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * One target per line: the URL, then optionally the protocol and the cipher suite, {@code -} for the default.
+     * Blank lines and lines starting with {@code #} are skipped.
+     */
+    public static List<AnalysisTarget> readTargets(BufferedReader reader) throws IOException {
+        List<AnalysisTarget> targets = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            targets.add(new AnalysisTarget(fields[0], field(fields, 1), field(fields, 2), false));
+        }
+        return targets;
+    }
+
+    private static String field(String[] fields, int index) {
+        return fields.length > index && !"-".equals(fields[index]) ? fields[index] : null;
+    }
+
+    /**
+     * Starts monitoring the targets; a target already monitored is ignored.
+     */
+    public void addTargets(Collection<AnalysisTarget> newTargets) {
+        for (AnalysisTarget target : newTargets) {
+            MonitoredTarget monitoredTarget = new MonitoredTarget(target);
+            if (targets.putIfAbsent(monitoredTarget.key, monitoredTarget) == null) {
+                schedule(monitoredTarget, ThreadLocalRandom.current().nextLong(intervalMillis));
+            }
+        }
+    }
+
+    /**
+     * Stops monitoring the target and forgets its result; a probe in flight completes without events.
+     */
+    public void removeTarget(AnalysisTarget target) {
+        MonitoredTarget monitoredTarget = targets.remove(MonitoredTarget.keyOf(target));
+        if (monitoredTarget != null) {
+            monitoredTarget.removed = true;
+        }
+    }
+
+    /**
+     * @return the latest result of the target, null until its first probe completes
+     */
+    public MonitorResult getLastResult(AnalysisTarget target) {
+        MonitoredTarget monitoredTarget = targets.get(MonitoredTarget.keyOf(target));
+        return monitoredTarget != null ? monitoredTarget.lastResult : null;
+    }
+
+    public int getTargetsCount() {
+        return targets.size();
+    }
+
+    private void schedule(MonitoredTarget target, long delayMillis) {
+        if (closed || target.removed) {
+            return;
+        }
+        try {
+            scheduler.schedule(() -> startProbe(target), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            // closed meanwhile
+        }
+    }
+
+    private void startProbe(MonitoredTarget target) {
+        if (closed || target.removed) {
+            return;
+        }
+        if (!target.resolving.compareAndSet(false, true)) {
+            // the lookup of an earlier probe still hangs, it keeps its thread rather than taking another one
+            CompletableFuture.runAsync(() -> completeProbe(target, MonitorResult.failure(System.currentTimeMillis(),
+                    "DNS resolution of " + target.host + " still pending")));
+            return;
+        }
+        CompletableFuture<ResolvedTarget> resolution = new CompletableFuture<>();
+        try {
+            resolver.execute(() -> {
+                try {
+                    resolution.complete(resolve(target));
+                } catch (Exception ex) {
+                    resolution.completeExceptionally(ex);
+                } finally {
+                    target.resolving.set(false);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // every resolver thread is busy, or the monitor was closed meanwhile
+            target.resolving.set(false);
+            postpone(target);
+            return;
+        }
+        ScheduledFuture<?> timeout = scheduler.schedule(() -> resolution.completeExceptionally(new UnknownHostException(
+                target.host + ": resolution timed out after " + RESOLVE_TIMEOUT_MILLIS + " ms")),
+                RESOLVE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        resolution.whenCompleteAsync((resolvedTarget, failure) -> {
+            timeout.cancel(false);
+            if (failure != null) {
+                completeProbe(target, MonitorResult.failure(System.currentTimeMillis(), String.valueOf(SSLEngineProbe.unwrap(failure))));
+                return;
+            }
+            try {
+                scheduler.execute(() -> startHandshake(target, resolvedTarget));
+            } catch (RejectedExecutionException ex) {
+                // closed meanwhile
+            }
+        });
+    }
+
+    /**
+     * Runs on the resolver threads.
+     */
+    private ResolvedTarget resolve(MonitoredTarget target) throws IOException, GeneralSecurityException {
+        InetSocketAddress remoteAddress = new InetSocketAddress(dnsResolver.resolve(target.uri.getHost())[0],
+                SSLEngineProbe.port(target.uri));
+        return new ResolvedTarget(remoteAddress, getSSLContext(target.target.getProtocol()));
+    }
+
+    /**
+     * Runs on the scheduler thread, the probe only registers the resolved connection with a selector thread.
+     */
+    private void startHandshake(MonitoredTarget target, ResolvedTarget resolvedTarget) {
+        if (closed || target.removed) {
+            return;
+        }
+        Semaphore perHost = hostPermits.computeIfAbsent(target.host, host -> new Semaphore(maxProbesPerHost));
+        if (!globalPermits.tryAcquire()) {
+            postpone(target);
+            return;
+        }
+        if (!perHost.tryAcquire()) {
+            globalPermits.release();
+            postpone(target);
+            return;
+        }
+        probesInFlight.incrementAndGet();
+        PacketsSniffer packetsSniffer = snifferService.newPacketsSniffer(false);
+        long startNanos = System.nanoTime();
+        probe.handshake(target.target, resolvedTarget.remoteAddress, resolvedTarget.sslContext, packetsSniffer)
+                .whenCompleteAsync((captureSession, failure) -> {
+                    try {
+                        MonitorResult result = failure == null
+                                ? toResult(captureSession, System.nanoTime() - startNanos)
+                                : MonitorResult.failure(System.currentTimeMillis(), String.valueOf(SSLEngineProbe.unwrap(failure)));
+                        onResult(target, result);
+                    } finally {
+                        packetsSniffer.recycle();
+                        perHost.release();
+                        globalPermits.release();
+                        probesInFlight.decrementAndGet();
+                        schedule(target, nextDelayMillis());
+                    }
+                });
+    }
+
+    private void completeProbe(MonitoredTarget target, MonitorResult result) {
+        try {
+            onResult(target, result);
+        } finally {
+            schedule(target, nextDelayMillis());
+        }
+    }
+
+    private SSLContext getSSLContext(String protocol) throws GeneralSecurityException, IOException {
+        String key = StringUtils.defaultString(protocol);
+        SSLContext sslContext = sslContexts.get(key);
+        if (sslContext == null) {
+            // concurrent first probes of a protocol may both fetch it, the cache hands them the same context
+            sslContext = snifferService.getSSLContext(protocol);
+            sslContexts.putIfAbsent(key, sslContext);
+        }
+        return sslContext;
+    }
+
+    private void postpone(MonitoredTarget target) {
+        postponedProbes.incrementAndGet();
+        schedule(target, ThreadLocalRandom.current().nextLong(MIN_POSTPONE_MILLIS,
+                Math.max(MIN_POSTPONE_MILLIS + 1, Math.min(MAX_POSTPONE_MILLIS, intervalMillis / 10))));
+    }
+
+    private long nextDelayMillis() {
+        long jitter = intervalMillis * JITTER_PERCENT / 100;
+        return jitter == 0 ? intervalMillis : intervalMillis + ThreadLocalRandom.current().nextLong(-jitter, jitter + 1);
+    }
+
+    private MonitorResult toResult(PacketCaptureSession captureSession, long elapsedNanos) {
+        long now = System.currentTimeMillis();
+        SSLSession sslSession = captureSession.getSSLSession();
+        if (sslSession == null) {
+            return MonitorResult.failure(now, "No TLS session");
+        }
+        String fingerprint = null;
+        long daysToExpiry = Long.MAX_VALUE;
+        try {
+            CertificateChainAnalysis chainAnalysis = snifferService.getCertificateAnalysisCache()
+                    .analyze(sslSession.getPeerCertificates());
+            if (chainAnalysis.getLeaf() != null) {
+                fingerprint = chainAnalysis.getLeaf().getFingerprint();
+            }
+            daysToExpiry = chainAnalysis.getDaysToExpiry(now);
+        } catch (Exception ex) {
+            // anonymous suites present no certificate, the fingerprint stays unknown
+        }
+        HandshakeTimings timings = captureSession.getHandshakeTimings();
+        long handshakeNanos = timings.isAvailable(HandshakePhase.HANDSHAKE)
+                ? timings.getDurationNanos(HandshakePhase.HANDSHAKE)
+                : elapsedNanos;
+        return MonitorResult.success(now, sslSession.getProtocol(), sslSession.getCipherSuite(), fingerprint,
+                daysToExpiry, handshakeNanos);
+    }
+
+    private void onResult(MonitoredTarget target, MonitorResult current) {
+        if (current.isSuccessful()) {
+            successfulProbes.incrementAndGet();
+            handshakeLatency.record(current.getHandshakeNanos());
+        } else {
+            failedProbes.incrementAndGet();
+        }
+        MonitorResult previous = target.lastResult;
+        MonitorResult lastSuccess = target.lastSuccess;
+        target.lastResult = current;
+        if (current.isSuccessful()) {
+            target.lastSuccess = current;
+        }
+        if (previous == null || target.removed) {
+            return;
+        }
+        if (previous.isSuccessful() != current.isSuccessful()) {
+            notifyChange(target, MonitorChange.AVAILABILITY, previous, current);
+        }
+        if (lastSuccess == null || !current.isSuccessful()) {
+            return;
+        }
+        // compared with the last success, so an outage in between doesn't hide what changed across it
+        if (!StringUtils.equals(lastSuccess.getProtocol(), current.getProtocol())) {
+            notifyChange(target, MonitorChange.PROTOCOL, lastSuccess, current);
+        }
+        if (!StringUtils.equals(lastSuccess.getCipherSuite(), current.getCipherSuite())) {
+            notifyChange(target, MonitorChange.CIPHER_SUITE, lastSuccess, current);
+        }
+        if (!StringUtils.equals(lastSuccess.getCertificateFingerprint(), current.getCertificateFingerprint())) {
+            notifyChange(target, MonitorChange.CERTIFICATE, lastSuccess, current);
+        }
+        if (isSlow(lastSuccess) != isSlow(current)) {
+            notifyChange(target, MonitorChange.LATENCY_THRESHOLD, lastSuccess, current);
+        }
+    }
+
+    private boolean isSlow(MonitorResult result) {
+        return result.getHandshakeNanos() > latencyThresholdNanos;
+    }
+
+    private void notifyChange(MonitoredTarget target, MonitorChange change, MonitorResult previous, MonitorResult current) {
+        changes.incrementAndGet(change.ordinal());
+        if (listener != null) {
+            listener.onChange(target.target, change, previous, current);
+        }
+    }
+
+    /**
+     * Prometheus text exposition format, version 0.0.4. Target gauges are aggregated rather than labelled per
+     * target, so the output size doesn't grow with the target list.
+     */
+    public void writeMetrics(Appendable out) throws IOException {
+        int failing = 0;
+        int slow = 0;
+        long minDaysToExpiry = Long.MAX_VALUE;
+        Map<String, Integer> protocols = new TreeMap<>();
+        for (MonitoredTarget target : targets.values()) {
+            MonitorResult result = target.lastResult;
+            if (result == null) {
+                continue;
+            }
+            if (!result.isSuccessful()) {
+                failing++;
+                continue;
+            }
+            if (isSlow(result)) {
+                slow++;
+            }
+            minDaysToExpiry = Math.min(minDaysToExpiry, result.getCertificateDaysToExpiry());
+            protocols.merge(result.getProtocol(), 1, Integer::sum);
+        }
+
+        gauge(out, "tls_monitor_targets", "Monitored targets.", targets.size());
+        gauge(out, "tls_monitor_targets_failing", "Targets whose last probe failed.", failing);
+        gauge(out, "tls_monitor_targets_slow", "Targets whose last handshake exceeded the latency threshold.", slow);
+        gauge(out, "tls_monitor_probes_in_flight", "Probes currently running.", probesInFlight.get());
+        header(out, "tls_monitor_targets_by_protocol", "Targets by protocol negotiated on their last probe.", "gauge");
+        for (Map.Entry<String, Integer> protocol : protocols.entrySet()) {
+            sample(out, "tls_monitor_targets_by_protocol{protocol=\"" + escape(protocol.getKey()) + "\"}", protocol.getValue());
+        }
+        if (minDaysToExpiry != Long.MAX_VALUE) {
+            gauge(out, "tls_monitor_certificate_min_days_to_expiry",
+                    "Fewest days left before a certificate of a monitored chain expires.", minDaysToExpiry);
+        }
+
+        header(out, "tls_monitor_probes_total", "Completed probes by outcome.", "counter");
+        sample(out, "tls_monitor_probes_total{outcome=\"success\"}", successfulProbes.get());
+        sample(out, "tls_monitor_probes_total{outcome=\"failure\"}", failedProbes.get());
+        counter(out, "tls_monitor_probes_postponed_total", "Probes postponed by the concurrency limits.", postponedProbes.get());
+        header(out, "tls_monitor_changes_total", "Changes detected between consecutive probes, by kind.", "counter");
+        for (MonitorChange change : MonitorChange.values()) {
+            sample(out, "tls_monitor_changes_total{change=\"" + change.name().toLowerCase(Locale.ROOT) + "\"}",
+                    changes.get(change.ordinal()));
+        }
+
+        header(out, "tls_monitor_handshake_duration_seconds", "Duration of successful handshakes.", "histogram");
+        for (double bucket : HANDSHAKE_BUCKETS_SECONDS) {
+            long count = handshakeLatency.getCountAtOrBelow((long) (bucket * 1e9));
+            sample(out, "tls_monitor_handshake_duration_seconds_bucket{le=\"" + bucket + "\"}", count);
+        }
+        long count = handshakeLatency.getCount();
+        sample(out, "tls_monitor_handshake_duration_seconds_bucket{le=\"+Inf\"}", count);
+        out.append("tls_monitor_handshake_duration_seconds_sum ")
+                .append(String.valueOf(handshakeLatency.getTotalNanos() / 1e9)).append('\n');
+        sample(out, "tls_monitor_handshake_duration_seconds_count", count);
+    }
+
+    private static void gauge(Appendable out, String name, String help, long value) throws IOException {
+        header(out, name, help, "gauge");
+        sample(out, name, value);
+    }
+
+    private static void counter(Appendable out, String name, String help, long value) throws IOException {
+        header(out, name, help, "counter");
+        sample(out, name, value);
+    }
+
+    private static void header(Appendable out, String name, String help, String type) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(Appendable out, String series, long value) throws IOException {
+        out.append(series).append(' ').append(String.valueOf(value)).append('\n');
+    }
+
+    private static String escape(String labelValue) {
+        return String.valueOf(labelValue).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Stops scheduling probes; probes in flight complete on the {@link SSLEngineProbe}, which the caller closes.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdownNow();
+        resolver.shutdownNow();
+    }
+
+    private static class MonitoredTarget {
+
+        private final AnalysisTarget target;
+        private final String key;
+        private final URI uri;
+        private final String host;
+        private volatile MonitorResult lastResult;
+        private volatile MonitorResult lastSuccess;
+        private volatile boolean removed;
+        private final AtomicBoolean resolving = new AtomicBoolean();
+
+        private MonitoredTarget(AnalysisTarget target) {
+            this.target = target;
+            this.key = keyOf(target);
+            this.uri = URI.create(target.getUrl());
+            this.host = uri.getHost() != null ? uri.getHost().toLowerCase(Locale.ROOT) : target.getUrl();
+        }
+
+        private static String keyOf(AnalysisTarget target) {
+            return target.getUrl() + '|' + target.getProtocol() + '|' + target.getCipher();
+        }
+    }
+
+    private static class ResolvedTarget {
+
+        private final InetSocketAddress remoteAddress;
+        private final SSLContext sslContext;
+
+        private ResolvedTarget(InetSocketAddress remoteAddress, SSLContext sslContext) {
+            this.remoteAddress = remoteAddress;
+            this.sslContext = sslContext;
+        }
+    }
+}
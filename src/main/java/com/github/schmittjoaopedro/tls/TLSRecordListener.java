@@ -0,0 +1,40 @@
+package com.github.schmittjoaopedro.tls;
+
+/**
+ * Events emitted by {@link TLSRecordParser} while bytes flow through the sniffer. Codes are the raw wire values, see
+ * {@link TLSContentType} and {@link TLSHandshakeType} for their names.
+ */
+public interface TLSRecordListener {
+
+    default void onRecord(boolean output, int contentType, int version, int length) {
+    }
+
+    default void onHandshakeMessage(boolean output, int handshakeType, int length) {
+    }
+
+    /**
+     * A slice of the body of the last announced plaintext handshake message. The array belongs to the caller and is
+     * only valid during the call; a body may arrive in several slices.
+     */
+    default void onHandshakeBody(boolean output, int handshakeType, byte[] b, int off, int len) {
+    }
+
+    /**
+     * A handshake record sent after ChangeCipherSpec, its content (usually Finished) is encrypted.
+     */
+    default void onEncryptedHandshakeMessage(boolean output, int length) {
+    }
+
+    default void onChangeCipherSpec(boolean output) {
+    }
+
+    default void onAlert(boolean output, int level, int description) {
+    }
+
+    /**
+     * The stream does not look like TLS records, the parser ignores the remaining bytes of this direction.
+     */
+    default void onUnrecognizedData(boolean output) {
+    }
+
+}
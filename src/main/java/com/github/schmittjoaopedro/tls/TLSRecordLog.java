@@ -0,0 +1,42 @@
+package com.github.schmittjoaopedro.tls;
+
+/**
+ * Keeps a one-line-per-event description of the decoded records for the analysis report.
+ */
+public class TLSRecordLog implements TLSRecordListener {
+
+    private final StringBuilder log = new StringBuilder();
+
+    @Override
+    public synchronized void onRecord(boolean output, int contentType, int version, int length) {
+        log.append(output ? "Output" : "Input").append(" record: ")
+                .append(TLSContentType.nameOf(contentType)).append(' ')
+                .append(TLSRecordParser.versionName(version))
+                .append(" length ").append(length).append('\n');
+    }
+
+    @Override
+    public synchronized void onHandshakeMessage(boolean output, int handshakeType, int length) {
+        log.append("\tHandshake message: ").append(TLSHandshakeType.nameOf(handshakeType))
+                .append(" length ").append(length).append('\n');
+    }
+
+    @Override
+    public synchronized void onEncryptedHandshakeMessage(boolean output, int length) {
+        log.append("\tEncrypted handshake message\n");
+    }
+
+    @Override
+    public synchronized void onAlert(boolean output, int level, int description) {
+        log.append("\tAlert: level ").append(level).append(" description ").append(description).append('\n');
+    }
+
+    @Override
+    public synchronized void onUnrecognizedData(boolean output) {
+        log.append(output ? "Output" : "Input").append(" stream is not TLS, decoding stopped\n");
+    }
+
+    public synchronized String getLog() {
+        return log.toString();
+    }
+}
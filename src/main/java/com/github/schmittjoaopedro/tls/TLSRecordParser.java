@@ -0,0 +1,193 @@
+package com.github.schmittjoaopedro.tls;
+
+/**
+ * Incremental parser of one direction of a TLS stream. Bytes are fed as they are sniffed and only partial record,
+ * handshake and alert headers are buffered, so memory stays constant whatever the session size.
+ */
+public class TLSRecordParser {
+
+    private static final int RECORD_HEADER_LENGTH = 5;
+    private static final int HANDSHAKE_HEADER_LENGTH = 4;
+    private static final int ALERT_LENGTH = 2;
+    private static final int MAX_RECORD_LENGTH = (1 << 14) + 2048;
+
+    private final boolean output;
+    private final TLSRecordListener listener;
+
+    private final byte[] recordHeader = new byte[RECORD_HEADER_LENGTH];
+    private int recordHeaderPosition;
+    private int recordContentType;
+    private int recordRemaining;
+
+    private final byte[] handshakeHeader = new byte[HANDSHAKE_HEADER_LENGTH];
+    private int handshakeHeaderPosition;
+    private int handshakeType;
+    private int handshakeRemaining;
+    private final byte[] singleByte = new byte[1];
+
+    private final byte[] alert = new byte[ALERT_LENGTH];
+    private int alertPosition;
+
+    private boolean encrypted;
+    private boolean desynchronized;
+
+    private int feedOffset;
+    private int feedPosition;
+    private int recordStartOffset;
+
+    public TLSRecordParser(boolean output, TLSRecordListener listener) {
+        this.output = output;
+        this.listener = listener;
+    }
+
+    public void feed(int b) {
+        if (!desynchronized) {
+            feedOffset = 0;
+            feedPosition = 0;
+            consume((byte) b);
+        }
+    }
+
+    public void feed(byte[] b, int off, int len) {
+        feedOffset = off;
+        int position = off;
+        int end = off + len;
+        while (position < end && !desynchronized) {
+            int skippable = skippableBytes();
+            if (skippable > 0) {
+                int count = Math.min(skippable, end - position);
+                recordRemaining -= count;
+                if (isPlainHandshake()) {
+                    handshakeRemaining -= count;
+                    listener.onHandshakeBody(output, handshakeType, b, position, count);
+                }
+                position += count;
+            } else {
+                feedPosition = position;
+                consume(b[position++]);
+            }
+        }
+    }
+
+    private int skippableBytes() {
+        if (recordRemaining == 0) {
+            return 0;
+        }
+        if (isPlainHandshake()) {
+            // handshake bodies are skipped, their headers are parsed byte by byte
+            return handshakeHeaderPosition == 0 ? Math.min(recordRemaining, handshakeRemaining) : 0;
+        }
+        if (recordContentType == TLSContentType.ALERT.getCode() && !encrypted) {
+            return 0;
+        }
+        return recordRemaining;
+    }
+
+    private boolean isPlainHandshake() {
+        return recordContentType == TLSContentType.HANDSHAKE.getCode() && !encrypted;
+    }
+
+    private void consume(byte b) {
+        if (recordRemaining == 0) {
+            recordHeader[recordHeaderPosition++] = b;
+            if (recordHeaderPosition == RECORD_HEADER_LENGTH) {
+                recordHeaderPosition = 0;
+                startRecord();
+            }
+            return;
+        }
+        recordRemaining--;
+        if (isPlainHandshake()) {
+            consumeHandshake(b);
+        } else if (recordContentType == TLSContentType.ALERT.getCode() && !encrypted) {
+            alert[alertPosition++] = b;
+            if (alertPosition == ALERT_LENGTH) {
+                alertPosition = 0;
+                listener.onAlert(output, alert[0] & 0xff, alert[1] & 0xff);
+            }
+        }
+    }
+
+    private void startRecord() {
+        int contentType = recordHeader[0] & 0xff;
+        int version = ((recordHeader[1] & 0xff) << 8) | (recordHeader[2] & 0xff);
+        int length = ((recordHeader[3] & 0xff) << 8) | (recordHeader[4] & 0xff);
+        if (TLSContentType.fromCode(contentType) == null || (version >> 8) != 3 || length > MAX_RECORD_LENGTH) {
+            desynchronized = true;
+            listener.onUnrecognizedData(output);
+            return;
+        }
+        recordContentType = contentType;
+        recordRemaining = length;
+        recordStartOffset = Math.max(feedOffset, feedPosition - (RECORD_HEADER_LENGTH - 1));
+        alertPosition = 0;
+        listener.onRecord(output, contentType, version, length);
+        if (contentType == TLSContentType.CHANGE_CIPHER_SPEC.getCode()) {
+            encrypted = true;
+            listener.onChangeCipherSpec(output);
+        } else if (contentType == TLSContentType.HANDSHAKE.getCode() && encrypted) {
+            listener.onEncryptedHandshakeMessage(output, length);
+        }
+    }
+
+    private void consumeHandshake(byte b) {
+        if (handshakeRemaining > 0) {
+            handshakeRemaining--;
+            singleByte[0] = b;
+            listener.onHandshakeBody(output, handshakeType, singleByte, 0, 1);
+            return;
+        }
+        handshakeHeader[handshakeHeaderPosition++] = b;
+        if (handshakeHeaderPosition == HANDSHAKE_HEADER_LENGTH) {
+            handshakeHeaderPosition = 0;
+            handshakeType = handshakeHeader[0] & 0xff;
+            handshakeRemaining = ((handshakeHeader[1] & 0xff) << 16) | ((handshakeHeader[2] & 0xff) << 8) | (handshakeHeader[3] & 0xff);
+            listener.onHandshakeMessage(output, handshakeType, handshakeRemaining);
+        }
+    }
+
+    /**
+     * Valid while {@link TLSRecordListener#onRecord} runs: where the announced record's header starts in the array of
+     * the feed in progress, or the feed offset when the header began in an earlier feed.
+     */
+    int getRecordStartOffset() {
+        return recordStartOffset;
+    }
+
+    /**
+     * Valid while {@link TLSRecordListener#onRecord} runs: how many bytes of the announced record's header were fed
+     * before the feed in progress, all of them for a header fed byte by byte.
+     */
+    int getRecordHeaderBytesBeforeFeed() {
+        return Math.max(0, feedOffset - (feedPosition - (RECORD_HEADER_LENGTH - 1)));
+    }
+
+    /**
+     * @return the wire code of a JSSE protocol name such as {@code TLSv1.2}, or -1 when unknown
+     */
+    public static int versionCode(String protocol) {
+        for (int version = 0x0300; version <= 0x0304; version++) {
+            if (versionName(version).equals(protocol)) {
+                return version;
+            }
+        }
+        return -1;
+    }
+
+    public static String versionName(int version) {
+        switch (version) {
+            case 0x0300:
+                return "SSLv3";
+            case 0x0301:
+                return "TLSv1";
+            case 0x0302:
+                return "TLSv1.1";
+            case 0x0303:
+                return "TLSv1.2";
+            case 0x0304:
+                return "TLSv1.3";
+            default:
+                return String.format("0x%04x", version);
+        }
+    }
+}
@@ -1,25 +1,31 @@
 package com.github.schmittjoaopedro.tls;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpResponse;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.conn.ssl.SSLContexts;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
-import org.apache.http.util.EntityUtils;
 
 import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLSession;
-import javax.security.cert.X509Certificate;
+import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.security.KeyStore;
-import java.security.Provider;
-import java.security.Security;
-import java.util.Enumeration;
-import java.util.Iterator;
-
-import static com.github.schmittjoaopedro.tls.ConversionUtils.byteArrayToHex;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * How to Import Public Certificates into Java’s Truststore from a Browser
@@ -54,143 +60,259 @@ import static com.github.schmittjoaopedro.tls.ConversionUtils.byteArrayToHex;
  */
 public class TLSSnifferService {
 
+    private static final int RESPONSE_BUFFER_SIZE = 8192;
+    private static final SSLContextCache DEFAULT_SSL_CONTEXT_CACHE = new SSLContextCache(32);
+    private static final CertificateAnalysisCache DEFAULT_CERTIFICATE_ANALYSIS_CACHE =
+            new CertificateAnalysisCache(1024, TimeUnit.HOURS.toMillis(1));
+
+    private final SSLContextCache sslContextCache;
+    private final HandshakeLatencyStats latencyStats;
+    private final CapturePolicy capturePolicy;
+    private final CertificateAnalysisCache certificateAnalysisCache;
+
+    public TLSSnifferService() {
+        this(DEFAULT_SSL_CONTEXT_CACHE);
+    }
+
+    public TLSSnifferService(SSLContextCache sslContextCache) {
+        this(sslContextCache, null);
+    }
+
+    /**
+     * @param latencyStats receives the handshake phase timings of every analysis, keyed by URL; may be null
+     */
+    public TLSSnifferService(SSLContextCache sslContextCache, HandshakeLatencyStats latencyStats) {
+        this(sslContextCache, latencyStats, CapturePolicy.CAPTURE_ALL);
+    }
+
+    /**
+     * @param capturePolicy bounds the packets kept for the handshake log of every analysis
+     */
+    public TLSSnifferService(SSLContextCache sslContextCache, HandshakeLatencyStats latencyStats, CapturePolicy capturePolicy) {
+        this(sslContextCache, latencyStats, capturePolicy, DEFAULT_CERTIFICATE_ANALYSIS_CACHE);
+    }
+
+    /**
+     * @param certificateAnalysisCache shares certificate analyses between the reports of all analyses using it
+     */
+    public TLSSnifferService(SSLContextCache sslContextCache, HandshakeLatencyStats latencyStats, CapturePolicy capturePolicy,
+                             CertificateAnalysisCache certificateAnalysisCache) {
+        this.sslContextCache = sslContextCache;
+        this.latencyStats = latencyStats;
+        this.capturePolicy = capturePolicy;
+        this.certificateAnalysisCache = certificateAnalysisCache;
+    }
+
     public String runAnalysis(String url, String protocol, String cipher, boolean logHandshake) {
-        StringBuilder analysisLog = new StringBuilder("\n");
-        printServiceProviders(analysisLog);
-        printDetailedDiagnostic(analysisLog, url, protocol, cipher, logHandshake);
+        return runAnalysis(new AnalysisTarget(url, protocol, cipher, logHandshake), 0);
+    }
+
+    /**
+     * Streams the report to {@code out} section by section instead of building it in memory.
+     */
+    public void runAnalysis(String url, String protocol, String cipher, boolean logHandshake, Appendable out) {
+        runAnalysis(new AnalysisTarget(url, protocol, cipher, logHandshake), 0, out);
+    }
+
+    /**
+     * Streams the report to {@code out} as UTF-8. The stream is flushed, not closed.
+     */
+    public void runAnalysis(String url, String protocol, String cipher, boolean logHandshake, OutputStream out) {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        runAnalysis(url, protocol, cipher, logHandshake, writer);
+        try {
+            writer.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    String runAnalysis(AnalysisTarget target, int timeoutMillis) {
+        StringBuilder analysisLog = new StringBuilder();
+        runAnalysis(target, timeoutMillis, analysisLog);
         return analysisLog.toString();
     }
 
-    private void printDetailedDiagnostic(StringBuilder analysisLog, String url, String protocol, String cipher, boolean logHandshake) {
+    void runAnalysis(AnalysisTarget target, int timeoutMillis, Appendable out) {
+        AnalysisResult analysisResult = analyze(target, timeoutMillis);
+        try {
+            analysisResult.appendText(out);
+        } finally {
+            analysisResult.release();
+        }
+    }
+
+    /**
+     * Runs the analysis reading the whole response body, without formatting anything; render the result with
+     * {@link AnalysisResult#appendText} or {@link AnalysisResult#appendJson}.
+     *
+     * @param timeoutMillis bound of connect, handshake and response reads, 0 for none
+     */
+    public AnalysisResult analyze(AnalysisTarget target, int timeoutMillis) {
+        return analyze(target, timeoutMillis, ResponseMode.FULL_BODY);
+    }
+
+    /**
+     * The client, its connection manager and the response are closed before returning, so repeated analyses hold no
+     * pool or socket.
+     *
+     * @param responseMode how much of the response body to read
+     */
+    public AnalysisResult analyze(AnalysisTarget target, int timeoutMillis, ResponseMode responseMode) {
+        String url = target.getUrl();
+        String protocol = target.getProtocol();
+        String cipher = target.getCipher();
         SSLContext sslContext = null;
-        HttpResponse response = null;
-        PacketsSniffer packetsSniffer = new PacketsSniffer();
+        String error = null;
+        ResponseResult response = null;
+        PacketsSniffer packetsSniffer = newPacketsSniffer(target.isLogHandshake());
         try {
             // Factory
-            KeyStore keyStore = KeyStore.getInstance(System.getProperty("javax.net.ssl.trustStoreType"));
-            keyStore.load(getClass().getClassLoader().getResourceAsStream(System.getProperty("javax.net.ssl.trustStore")),
-                    System.getProperty("javax.net.ssl.trustStorePassword").toCharArray());
-            sslContext = SSLContexts.custom()
-                    .loadTrustMaterial(keyStore)
-                    .useProtocol(StringUtils.isBlank(protocol) ? null : protocol)
-                    .build();
+            sslContext = getSSLContext(protocol);
             PacketsSnifferConnectionManager customConnectionManager = new PacketsSnifferConnectionManager(
                     packetsSniffer,
                     sslContext,
                     // if protocol and ciphers are not defined, those provided as default by webserver are used (null)
                     StringUtils.isBlank(protocol) ? new String[]{System.getProperty("https.protocols")} : new String[]{protocol},
                     StringUtils.isBlank(cipher) ? null : new String[]{cipher});
-            CloseableHttpClient httpClient = HttpClients
+            HttpClientBuilder httpClientBuilder = HttpClients
                     .custom()
-                    .setConnectionManager(customConnectionManager)
-                    .build();
-            // Client
-            HttpGet httpGet = new HttpGet(url);
-            response = httpClient.execute(httpGet);
+                    .setConnectionManager(customConnectionManager);
+            if (timeoutMillis > 0) {
+                // socket config bounds the handshake, request config bounds the exchange that follows it
+                customConnectionManager.setDefaultSocketConfig(SocketConfig.custom().setSoTimeout(timeoutMillis).build());
+                httpClientBuilder.setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(timeoutMillis)
+                        .setConnectionRequestTimeout(timeoutMillis)
+                        .setSocketTimeout(timeoutMillis)
+                        .build());
+            }
+            // closing the client shuts the connection manager down
+            try (CloseableHttpClient httpClient = httpClientBuilder.build()) {
+                // Client
+                HttpGet httpGet = new HttpGet(url);
+                long startNanos = System.nanoTime();
+                try (CloseableHttpResponse httpResponse = httpClient.execute(httpGet)) {
+                    response = readResponse(httpResponse, responseMode, startNanos);
+                }
+            }
         } catch (Exception ex) {
-            analysisLog.append("Error requesting URL\n");
-            analysisLog.append(ex.getMessage());
-            analysisLog.append("\n");
+            error = String.valueOf(ex.getMessage());
         }
-        // Logs
-        if (sslContext != null) {
-            printTLSGeneralInfo(analysisLog, sslContext.getSupportedSSLParameters().getProtocols(), sslContext.getSupportedSSLParameters().getCipherSuites());
+        TLSInventory.SupportedParameters supportedParameters = sslContext != null
+                ? TLSInventory.getSupportedParameters(sslContext)
+                : null;
+        return AnalysisResult.ofRequest(target, supportedParameters, error, response, toConnectionResults(target, packetsSniffer));
+    }
+
+    /**
+     * Reads the body through one fixed buffer. A body read partially is left unconsumed: closing the response then
+     * drops the connection rather than draining the rest of it.
+     */
+    private static ResponseResult readResponse(CloseableHttpResponse httpResponse, ResponseMode responseMode, long startNanos) {
+        long headersNanos = System.nanoTime() - startNanos;
+        int status = httpResponse.getStatusLine().getStatusCode();
+        HttpEntity entity = httpResponse.getEntity();
+        boolean keepBody = responseMode.getKind() == ResponseMode.Kind.BODY;
+        if (responseMode.getKind() == ResponseMode.Kind.STATUS_ONLY) {
+            return new ResponseResult(responseMode, status, null, 0, entity != null && entity.getContentLength() != 0,
+                    headersNanos, -1, -1, null);
         }
-        if (response != null) {
-            printRequestInfo(analysisLog, "Detailed", url, response);
+        if (entity == null) {
+            return new ResponseResult(responseMode, status, keepBody ? "" : null, 0, false, headersNanos, -1, 0, null);
         }
-        if (sslContext != null) {
-            Enumeration<byte[]> sessionIds = sslContext.getClientSessionContext().getIds();
-            while (sessionIds.hasMoreElements()) {
-                printTLSSessionInfo(analysisLog, sslContext.getClientSessionContext().getSession(sessionIds.nextElement()));
+        long limit = keepBody && responseMode.getMaxBodyBytes() != ResponseMode.UNLIMITED ? responseMode.getMaxBodyBytes() : Long.MAX_VALUE;
+        ByteArrayOutputStream keptBody = keepBody ? new ByteArrayOutputStream() : null;
+        byte[] buffer = new byte[RESPONSE_BUFFER_SIZE];
+        long bodyBytes = 0;
+        long firstByteNanos = -1;
+        boolean truncated = false;
+        String error = null;
+        try {
+            InputStream in = entity.getContent();
+            while (true) {
+                if (bodyBytes == limit) {
+                    truncated = in.read() != -1;
+                    break;
+                }
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, limit - bodyBytes));
+                if (read == -1) {
+                    in.close();
+                    break;
+                }
+                if (firstByteNanos < 0) {
+                    firstByteNanos = System.nanoTime() - startNanos;
+                }
+                bodyBytes += read;
+                if (keptBody != null) {
+                    keptBody.write(buffer, 0, read);
+                }
             }
+        } catch (IOException ex) {
+            error = ex.getMessage();
         }
-        if (logHandshake && packetsSniffer != null) {
-            printTLSTransmissionRawPackets(analysisLog, packetsSniffer);
+        long downloadNanos = System.nanoTime() - startNanos - headersNanos;
+        String body = null;
+        if (keptBody != null) {
+            Charset charset = ContentType.getOrDefault(entity).getCharset();
+            body = new String(keptBody.toByteArray(), charset != null ? charset : StandardCharsets.ISO_8859_1);
         }
+        return new ResponseResult(responseMode, status, body, bodyBytes, truncated, headersNanos, firstByteNanos,
+                downloadNanos, error);
     }
 
-    private void printServiceProviders(StringBuilder analysisLog) {
-        analysisLog.append("---------------------------\n");
-        analysisLog.append("WebServer service providers\n");
-        for (Provider provider : Security.getProviders()) {
-            analysisLog.append(provider + "\n");
-            for (Provider.Service service : provider.getServices()) {
-                if ("SSLContext".equals(service.getType())) {
-                    analysisLog.append("\t" + service.getType() + "." + service.getAlgorithm() + "\n");
-                }
-            }
-        }
-        analysisLog.append("\n");
+    public SSLContextCache getSSLContextCache() {
+        return sslContextCache;
     }
 
-    private void printTLSGeneralInfo(StringBuilder analysisLog, String[] protocols, String[] ciphers) {
-        analysisLog.append("---------------------------\n");
-        analysisLog.append("Request TLS global information\n");
-        // General TLS
-        analysisLog.append("Supported protocols:\n");
-        for (String protocol : protocols) {
-            analysisLog.append("\t" + protocol + "\n");
-        }
-        analysisLog.append("Supported ciphers:\n");
-        for (String cipher : ciphers) {
-            analysisLog.append("\t" + cipher + "\n");
-        }
-        analysisLog.append("\n");
+    public CertificateAnalysisCache getCertificateAnalysisCache() {
+        return certificateAnalysisCache;
     }
 
-    private void printRequestInfo(StringBuilder analysisLog, String client, String url, HttpResponse response) {
-        analysisLog.append("---------------------------\n");
-        analysisLog.append("Calling endpoint using " + client + " client\n");
-        analysisLog.append("Requesting     : " + url + "\n");
-        analysisLog.append("Response status: " + response.getStatusLine().getStatusCode() + "\n");
-        try {
-            analysisLog.append("Response body  : " + EntityUtils.toString(response.getEntity()) + "\n");
-        } catch (IOException ex) {
-            analysisLog.append("Failed read response body: " + ex.getMessage());
-        }
-        analysisLog.append("\n");
+    SSLContext getSSLContext(String protocol) throws GeneralSecurityException, IOException {
+        return sslContextCache.getSSLContext(
+                System.getProperty("javax.net.ssl.trustStore"),
+                System.getProperty("javax.net.ssl.trustStoreType"),
+                System.getProperty("javax.net.ssl.trustStorePassword"),
+                protocol);
     }
 
-    private void printTLSSessionInfo(StringBuilder analysisLog, SSLSession sslSession) {
-        try {
-            analysisLog.append("---------------------------\n");
-            analysisLog.append("TLS session information\n");
-            analysisLog.append("Client: " + sslSession.getPeerHost() + ":" + sslSession.getPeerPort() + "\n");
-            analysisLog.append("\tProtocol: " + sslSession.getProtocol() + "\n");
-            analysisLog.append("\tSessionID: " + byteArrayToHex(sslSession.getId()) + "\n");
-            analysisLog.append("\tCipherSuite: " + sslSession.getCipherSuite() + "\n");
-            for (X509Certificate certificate : sslSession.getPeerCertificateChain()) {
-                analysisLog.append("\tX509 Certificate: " + certificate.getSubjectDN() + "\n");
-                analysisLog.append("\t\tIssuer: " + certificate.getIssuerDN().getName() + "\n");
-                analysisLog.append("\t\tAlgorithm: " + certificate.getSigAlgName() + "\n");
-                analysisLog.append("\t\tValidity: " + certificate.getNotAfter() + "\n");
-            }
-            analysisLog.append("\n");
-        } catch (Exception ex) {
-            analysisLog.append("Error printing sessions TLS info\n");
-            analysisLog.append(ex.getMessage());
-            analysisLog.append("\n");
-        }
+    SSLContext newSSLContext(String protocol) throws GeneralSecurityException, IOException {
+        return sslContextCache.newSSLContext(
+                System.getProperty("javax.net.ssl.trustStore"),
+                System.getProperty("javax.net.ssl.trustStoreType"),
+                System.getProperty("javax.net.ssl.trustStorePassword"),
+                protocol);
     }
 
-    private void printTLSTransmissionRawPackets(StringBuilder analysisLog, PacketsSniffer packetsSniffer) {
-        analysisLog.append("---------------------------\n");
-        analysisLog.append("TLS transmission raw packets (https://tls.ulfheim.net/)\n\n");
-        Iterator<ByteArrayOutputStream> packetsIterator = packetsSniffer.getAllPackages().iterator();
-        while (packetsIterator.hasNext()) {
-            ByteArrayOutputStream packet = packetsIterator.next();
-            byte[] packetData = packet.toByteArray();
-            if (packet != null && packetData.length > 0) {
-                if (packetsSniffer.isOutputPacket(packet)) {
-                    analysisLog.append("Output packet: \n");
-                } else {
-                    analysisLog.append("Input packet: \n");
-                }
-                analysisLog.append(byteArrayToHex(packetData));
-                analysisLog.append("\n\n");
+    /**
+     * Result of a handshake made by {@link SSLEngineProbe}.
+     */
+    AnalysisResult newProbeResult(AnalysisTarget target, PacketsSniffer packetsSniffer, Throwable failure) {
+        return AnalysisResult.ofProbe(target, failure != null ? String.valueOf(failure.getMessage()) : null,
+                toConnectionResults(target, packetsSniffer));
+    }
+
+    PacketsSniffer newPacketsSniffer(boolean logHandshake) {
+        return new PacketsSniffer(CaptureChunkPool.getDefault(), logHandshake, capturePolicy);
+    }
+
+    /**
+     * Captures logging the handshake are handed over to the results, the others are recycled right away.
+     */
+    private List<ConnectionResult> toConnectionResults(AnalysisTarget target, PacketsSniffer packetsSniffer) {
+        List<PacketCaptureSession> captureSessions = packetsSniffer.getCaptureSessions();
+        List<ConnectionResult> connections = new ArrayList<>(captureSessions.size());
+        for (PacketCaptureSession captureSession : captureSessions) {
+            HandshakeTimings handshakeTimings = captureSession.getHandshakeTimings();
+            if (latencyStats != null && handshakeTimings.isAvailable(HandshakePhase.HANDSHAKE)) {
+                latencyStats.record(target.getUrl(), handshakeTimings);
             }
+            connections.add(new ConnectionResult(captureSession, certificateAnalysisCache, target.isLogHandshake()));
+        }
+        if (!target.isLogHandshake()) {
+            packetsSniffer.recycle();
         }
-        analysisLog.append("\n");
+        return connections;
     }
 }
@@ -0,0 +1,109 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AnalysisResultTest {
+
+    @Before
+    public void setUp() {
+        LoopbackTLSServer.useAsTrustStore();
+    }
+
+    @Test
+    public void analyze_shouldExposeTypedFields() throws Exception {
+        try (LoopbackTLSServer server = new LoopbackTLSServer()) {
+            AnalysisResult result = new TLSSnifferService().analyze(
+                    new AnalysisTarget(server.getUrl(), "TLSv1.2", null, true), 5000);
+
+            assertThat(result.isSuccessful()).isTrue();
+            assertThat(result.getResponseStatus()).isEqualTo(200);
+            assertThat(result.getResponseBody()).isEqualTo("{\"status\":\"ok\"}");
+            assertThat(result.getSupportedParameters().getProtocols()).contains("TLSv1.2");
+            assertThat(result.getConnections()).hasSize(1);
+            ConnectionResult connection = result.getConnections().get(0);
+            assertThat(connection.isSessionEstablished()).isTrue();
+            assertThat(connection.getProtocol()).isEqualTo("TLSv1.2");
+            assertThat(connection.getCertificateChain().getLeaf().getSubject()).isEqualTo("CN=localhost");
+            assertThat(connection.getHandshakeTimings().isAvailable(HandshakePhase.HANDSHAKE)).isTrue();
+            assertThat(connection.getRecordLog()).contains("ServerHello");
+            assertThat(connection.getCaptureBuffer().getPacketsCount()).isPositive();
+
+            result.release();
+            assertThat(connection.getCaptureBuffer()).isNull();
+        }
+    }
+
+    @Test
+    public void appendText_shouldRenderReportSections() throws Exception {
+        try (LoopbackTLSServer server = new LoopbackTLSServer()) {
+            AnalysisResult result = new TLSSnifferService().analyze(
+                    new AnalysisTarget(server.getUrl(), "TLSv1.2", null, true), 5000);
+
+            String text = result.toText();
+            result.release();
+
+            assertThat(text)
+                    .contains("WebServer service providers")
+                    .contains("\tSSLContext.TLSv1.2")
+                    .contains("Supported protocols:")
+                    .contains("Response status: 200")
+                    .contains("\tProtocol: TLSv1.2")
+                    .contains("X509 Certificate: CN=localhost")
+                    .contains("TLS handshake timings")
+                    .contains("TLS records")
+                    .contains("Output packet: \n160303");
+        }
+    }
+
+    @Test
+    public void appendJson_shouldLeaveOutJvmWideSections() throws Exception {
+        try (LoopbackTLSServer server = new LoopbackTLSServer()) {
+            AnalysisResult result = new TLSSnifferService().analyze(
+                    new AnalysisTarget(server.getUrl(), "TLSv1.2", null, true), 5000);
+
+            String json = result.toJson();
+            result.release();
+
+            assertThat(json)
+                    .startsWith("{\"url\":\"" + server.getUrl() + "\",\"protocol\":\"TLSv1.2\",\"cipher\":null,\"client\":\"HttpClient\",\"error\":null")
+                    .contains("\"response\":{\"status\":200,\"mode\":\"BODY\",\"body\":\"{\\\"status\\\":\\\"ok\\\"}\",\"bodyBytes\":15,\"truncated\":false,")
+                    .contains("\"protocol\":\"TLSv1.2\"")
+                    .contains("\"subject\":\"CN=localhost\"")
+                    .contains("\"subjectAlternativeNames\":[\"DNS:localhost\"")
+                    .contains("\"HANDSHAKE\":")
+                    .contains("{\"direction\":\"output\",\"startNanos\":")
+                    .contains("\"hex\":\"160303")
+                    .doesNotContain("Supported protocols")
+                    .doesNotContain("SSLContext.")
+                    .endsWith("]}");
+        }
+    }
+
+    @Test
+    public void failedRequest_shouldReportError() throws Exception {
+        int port;
+        try (LoopbackTLSServer server = new LoopbackTLSServer()) {
+            port = server.getPort();
+        }
+        AnalysisResult result = new TLSSnifferService().analyze(
+                new AnalysisTarget("https://localhost:" + port + "/", "TLSv1.2", null, false), 2000);
+
+        assertThat(result.isSuccessful()).isFalse();
+        assertThat(result.getResponseStatus()).isEqualTo(-1);
+        assertThat(result.toText()).contains("Error requesting URL").doesNotContain("Response status");
+        assertThat(result.toJson()).contains("\"response\":null");
+    }
+
+    @Test
+    public void supportedParameters_shouldBeComputedOncePerProtocol() throws Exception {
+        TLSSnifferService snifferService = new TLSSnifferService();
+
+        assertThat(TLSInventory.getSupportedParameters(snifferService.newSSLContext("TLSv1.2")))
+                .isSameAs(TLSInventory.getSupportedParameters(snifferService.newSSLContext("TLSv1.2")));
+        assertThat(TLSInventory.getProvidersText()).isSameAs(TLSInventory.getProvidersText());
+        assertThat(TLSInventory.getSSLContextProviders()).isNotEmpty();
+    }
+}
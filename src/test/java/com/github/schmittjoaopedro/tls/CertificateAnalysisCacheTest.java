@@ -0,0 +1,116 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CertificateAnalysisCacheTest {
+
+    @Test
+    public void sameChain_shouldBeAnalyzedOnce() throws Exception {
+        CertificateAnalysisCache cache = new CertificateAnalysisCache(16, TimeUnit.HOURS.toMillis(1));
+        Certificate[] chain = localhostChain();
+
+        CertificateChainAnalysis first = cache.analyze(chain);
+        CertificateChainAnalysis second = cache.analyze(localhostChain());
+
+        assertThat(second).isSameAs(first);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(first.isValid()).isTrue();
+        CertificateAnalysis leaf = first.getLeaf();
+        assertThat(leaf.getSubject()).isEqualTo("CN=localhost");
+        assertThat(leaf.getPublicKeyAlgorithm()).isEqualTo("RSA");
+        assertThat(leaf.getKeySize()).isEqualTo(2048);
+        assertThat(leaf.getSubjectAlternativeNames()).contains("DNS:localhost", "IP:127.0.0.1");
+        assertThat(leaf.getDaysToExpiry()).isPositive();
+        assertThat(leaf.getFingerprint()).hasSize(64);
+    }
+
+    @Test
+    public void expiredEntry_shouldBeAnalyzedAgain() throws Exception {
+        AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+        CertificateAnalysisCache cache = new CertificateAnalysisCache(16, 1000, clock::get);
+
+        CertificateChainAnalysis first = cache.analyze(localhostChain());
+        clock.addAndGet(1000);
+        CertificateChainAnalysis second = cache.analyze(localhostChain());
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(cache.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void fullCache_shouldEvictLeastRecentlyUsed() throws Exception {
+        CertificateAnalysisCache cache = new CertificateAnalysisCache(1, TimeUnit.HOURS.toMillis(1));
+
+        cache.analyze(localhostChain());
+        cache.analyze(new Certificate[]{rootCertificate()});
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.getEvictionCount()).isPositive();
+    }
+
+    @Test
+    public void brokenChain_shouldFailValidation() throws Exception {
+        CertificateAnalysisCache cache = new CertificateAnalysisCache(16, TimeUnit.HOURS.toMillis(1));
+
+        CertificateChainAnalysis analysis = cache.analyze(new Certificate[]{localhostChain()[0], rootCertificate()});
+
+        assertThat(analysis.isValid()).isFalse();
+        assertThat(analysis.getValidationError()).isNotBlank();
+    }
+
+    @Test
+    public void certificateCloseToExpiry_shouldBeReportedAsExpiring() throws Exception {
+        Certificate root = rootCertificate();
+        long notAfter = ((X509Certificate) root).getNotAfter().getTime();
+        AtomicLong clock = new AtomicLong(notAfter - TimeUnit.DAYS.toMillis(10));
+        CertificateAnalysisCache cache = new CertificateAnalysisCache(16, TimeUnit.HOURS.toMillis(1), clock::get);
+
+        CertificateChainAnalysis analysis = cache.analyze(new Certificate[]{root});
+
+        assertThat(analysis.getLeaf().getDaysToExpiry(clock.get())).isEqualTo(10);
+        assertThat(analysis.getLeaf().getDaysToExpiry(clock.get() + TimeUnit.DAYS.toMillis(20))).isEqualTo(-10);
+        assertThat(cache.getCertificatesExpiringWithin(30)).containsExactly(analysis.getLeaf());
+        assertThat(cache.getCertificatesExpiringWithin(5)).isEmpty();
+    }
+
+    @Test
+    public void certificatesOfLiveChain_shouldStayInExpiryReport() throws Exception {
+        CertificateAnalysisCache cache = new CertificateAnalysisCache(1, TimeUnit.HOURS.toMillis(1));
+        Certificate[] chain = {localhostChain()[0], rootCertificate()};
+
+        CertificateChainAnalysis analysis = cache.analyze(chain);
+        // the leaf was evicted by the root from the per-certificate map, the chain still holds it
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.getCertificatesExpiringWithin(Integer.MAX_VALUE))
+                .containsExactlyInAnyOrderElementsOf(analysis.getCertificates());
+
+        assertThat(cache.analyze(chain)).isSameAs(analysis);
+        assertThat(cache.getCertificatesExpiringWithin(Integer.MAX_VALUE))
+                .containsExactlyInAnyOrderElementsOf(analysis.getCertificates());
+    }
+
+    private Certificate[] localhostChain() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream keyStoreStream = getClass().getClassLoader().getResourceAsStream(LoopbackTLSServer.KEY_STORE)) {
+            keyStore.load(keyStoreStream, LoopbackTLSServer.KEY_STORE_PASSWORD.toCharArray());
+        }
+        return keyStore.getCertificateChain("localhost");
+    }
+
+    private Certificate rootCertificate() throws Exception {
+        try (InputStream certificateStream = getClass().getClassLoader().getResourceAsStream("certs/certificate.cer")) {
+            return CertificateFactory.getInstance("X.509").generateCertificate(certificateStream);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CipherSuiteScannerTest {
+
+    @Before
+    public void setUp() {
+        LoopbackTLSServer.useAsTrustStore();
+    }
+
+    @Test
+    public void serverWithTLS12Only_shouldPruneTLS13() throws Exception {
+        try (LoopbackTLSServer server = new LoopbackTLSServer("TLSv1.2")) {
+            CipherSuiteScanner scanner = new CipherSuiteScanner(new TLSSnifferService(), 8, 5000);
+            CipherSuiteScanReport report = scanner.scan(server.getUrl());
+            System.out.println(report);
+
+            assertThat(report.getProtocolOutcome("TLSv1.3")).isEqualTo(ProbeOutcome.REJECTED);
+            assertThat(report.getCipherSuiteOutcomes("TLSv1.3")).containsValue(ProbeOutcome.PRUNED).doesNotContainValue(ProbeOutcome.ACCEPTED);
+            assertThat(report.getProtocolOutcome("TLSv1.2")).isEqualTo(ProbeOutcome.ACCEPTED);
+            assertThat(report.getAcceptedCipherSuites("TLSv1.2"))
+                    .contains("TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256")
+                    .noneMatch(cipherSuite -> cipherSuite.contains("_ECDSA_"));
+            assertThat(scanner.getTrackedHostsCount()).isZero();
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConversionUtilsTest {
+
+    @Test
+    public void byteArrayToHex_shouldMatchFormat() {
+        byte[] bytes = new byte[256];
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+            expected.append(String.format("%02x", bytes[i]));
+        }
+
+        assertThat(ConversionUtils.byteArrayToHex(bytes)).isEqualTo(expected.toString());
+    }
+
+    @Test
+    public void appendHex_shouldWriteRangeWithoutMovingBuffer() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(2000);
+        for (int i = 0; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) i);
+        }
+        StringWriter writer = new StringWriter();
+
+        ConversionUtils.appendHex(writer, buffer, 254, 1800);
+
+        assertThat(writer.toString()).hasSize((1800 - 254) * 2).startsWith("feff0001");
+        assertThat(buffer.position()).isZero();
+    }
+
+}
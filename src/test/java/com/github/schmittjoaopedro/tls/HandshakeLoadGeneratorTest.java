@@ -0,0 +1,61 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Also the load mode for capacity sizing: longer runs against the loopback server are configured with system
+ * properties, e.g. {@code mvn test -Dtest=HandshakeLoadGeneratorTest -Dload.durationMillis=30000
+ * -Dload.concurrency=16 -Dload.rate=2000 -Dload.protocol=TLSv1.3}.
+ */
+public class HandshakeLoadGeneratorTest {
+
+    private static final long DURATION_MILLIS = Long.getLong("load.durationMillis", 1000);
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 4);
+    private static final int RATE = Integer.getInteger("load.rate", 0);
+    private static final String PROTOCOL = System.getProperty("load.protocol", "TLSv1.2");
+
+    @Before
+    public void setUp() {
+        LoopbackTLSServer.useAsTrustStore();
+    }
+
+    @Test
+    public void sniffingOnAndOff_shouldCompleteHandshakes() throws Exception {
+        try (LoopbackTLSServer server = new LoopbackTLSServer()) {
+            HandshakeLoadGenerator generator = new HandshakeLoadGenerator(new TLSSnifferService(), CONCURRENCY, RATE, 5000);
+            // warm-up, both paths share most of the JSSE code
+            generator.run(server.getUrl(), PROTOCOL, null, true, DURATION_MILLIS / 2);
+            HandshakeLoadReport off = generator.run(server.getUrl(), PROTOCOL, null, false, DURATION_MILLIS);
+            HandshakeLoadReport on = generator.run(server.getUrl(), PROTOCOL, null, true, DURATION_MILLIS);
+            System.out.println(off);
+            System.out.println(on);
+            if (off.getCpuNanos() > 0 && on.getCpuNanos() > 0) {
+                System.out.println(String.format(Locale.ROOT, "Sniffing CPU overhead: %+.1f%% per handshake",
+                        (on.getCpuNanosPerHandshake() / off.getCpuNanosPerHandshake() - 1) * 100));
+            }
+
+            for (HandshakeLoadReport report : new HandshakeLoadReport[]{off, on}) {
+                assertThat(report.getHandshakes()).isPositive();
+                assertThat(report.getFailures()).isZero();
+                assertThat(report.getThroughput()).isPositive();
+                assertThat(report.getLatency().getPercentileNanos(99)).isPositive();
+            }
+        }
+    }
+
+    @Test
+    public void targetRate_shouldNotBeExceeded() throws Exception {
+        try (LoopbackTLSServer server = new LoopbackTLSServer()) {
+            HandshakeLoadGenerator generator = new HandshakeLoadGenerator(new TLSSnifferService(), 2, 20, 5000);
+            HandshakeLoadReport report = generator.run(server.getUrl(), "TLSv1.2", null, true, 500);
+            System.out.println(report);
+
+            assertThat(report.getHandshakes() + report.getFailures()).isBetween(1L, 10L);
+        }
+    }
+}
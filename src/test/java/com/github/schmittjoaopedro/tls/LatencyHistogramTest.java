@@ -0,0 +1,67 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentiles_shouldStayWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long millis = 1; millis <= 1000; millis++) {
+            histogram.record(millis * 1_000_000);
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(1000);
+        assertThat((double) histogram.getPercentileNanos(50)).isCloseTo(500_000_000, within(500_000_000 * 0.07));
+        assertThat((double) histogram.getPercentileNanos(99)).isCloseTo(990_000_000, within(990_000_000 * 0.07));
+        assertThat(histogram.getPercentileNanos(100)).isEqualTo(1_000_000_000);
+        assertThat(histogram.getMeanNanos()).isEqualTo(500_500_000.0);
+    }
+
+    @Test
+    public void bucketBounds_shouldContainTheirValues() {
+        for (long value : new long[]{0, 15, 16, 31, 32, 33, 1_000, 123_456_789, LatencyHistogram.MAX_TRACKABLE_NANOS}) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertThat(LatencyHistogram.bucketUpperBound(index)).isGreaterThanOrEqualTo(value);
+            if (index > 0) {
+                assertThat(LatencyHistogram.bucketUpperBound(index - 1)).isLessThan(value);
+            }
+        }
+    }
+
+    @Test
+    public void latencyStats_shouldExportAvailablePhases() throws IOException {
+        HandshakeLatencyStats stats = new HandshakeLatencyStats();
+        HandshakeTimings timings = new HandshakeTimings();
+        timings.setDuration(HandshakePhase.TCP_CONNECT, 1_000_000, 3_000_000);
+        timings.setDuration(HandshakePhase.HANDSHAKE, 3_000_000, 13_000_000);
+        stats.record("https://localhost", timings);
+        StringBuilder csv = new StringBuilder();
+
+        stats.exportCsv(csv);
+
+        assertThat(csv.toString()).contains(
+                "https://localhost,TCP_CONNECT,1,2.000,",
+                "https://localhost,HANDSHAKE,1,10.000,");
+        assertThat(csv.toString()).doesNotContain("KEY_EXCHANGE");
+    }
+
+    @Test
+    public void latencyStats_shouldQuoteTargetsWithSeparators() throws IOException {
+        HandshakeLatencyStats stats = new HandshakeLatencyStats();
+        HandshakeTimings timings = new HandshakeTimings();
+        timings.setDuration(HandshakePhase.TCP_CONNECT, 1_000_000, 3_000_000);
+        stats.record("https://localhost/?ids=1,2&name=\"a\"", timings);
+        StringBuilder csv = new StringBuilder();
+
+        stats.exportCsv(csv);
+
+        assertThat(csv.toString()).contains("\n\"https://localhost/?ids=1,2&name=\"\"a\"\"\",TCP_CONNECT,1,2.000,");
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.github.schmittjoaopedro.tls;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Minimal HTTPS server on a loopback address, serving a fixed body with the certs/localhost.p12 key pair. Clients
+ * trust it by using the same file as truststore, see {@link #useAsTrustStore()}.
+ */
+public class LoopbackTLSServer implements Closeable {
+
+    static final String KEY_STORE = "certs/localhost.p12";
+    static final String KEY_STORE_PASSWORD = "localhost";
+
+    private final SSLServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "loopback-tls-server");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final byte[] response;
+
+    public LoopbackTLSServer(String... protocols) throws Exception {
+        this(InetAddress.getLoopbackAddress(), 0, "{\"status\":\"ok\"}", protocols);
+    }
+
+    public LoopbackTLSServer(InetAddress address, int port, String body, String... protocols) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream keyStoreStream = getClass().getClassLoader().getResourceAsStream(KEY_STORE)) {
+            keyStore.load(keyStoreStream, KEY_STORE_PASSWORD.toCharArray());
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, KEY_STORE_PASSWORD.toCharArray());
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        serverSocket = (SSLServerSocket) sslContext.getServerSocketFactory().createServerSocket(port, 200, address);
+        if (protocols.length > 0) {
+            serverSocket.setEnabledProtocols(protocols);
+        }
+        byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+        response = ("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: " + bodyBytes.length
+                + "\r\nConnection: close\r\n\r\n" + body).getBytes(StandardCharsets.UTF_8);
+        executor.submit(this::acceptConnections);
+    }
+
+    public static void useAsTrustStore() {
+        System.setProperty("javax.net.ssl.trustStoreType", "PKCS12");
+        System.setProperty("javax.net.ssl.trustStore", KEY_STORE);
+        System.setProperty("javax.net.ssl.trustStorePassword", KEY_STORE_PASSWORD);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public String getUrl() {
+        return "https://localhost:" + getPort() + "/";
+    }
+
+    private Void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                SSLSocket socket = (SSLSocket) serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                executor.submit(() -> serve(socket));
+            } catch (IOException ex) {
+                // closed
+            }
+        }
+        return null;
+    }
+
+    private Void serve(SSLSocket socket) {
+        try (SSLSocket client = socket) {
+            InputStream in = client.getInputStream();
+            int matched = 0;
+            int b;
+            // answer once the request headers end; handshake-only clients just close
+            while (matched < 4 && (b = in.read()) != -1) {
+                matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+            }
+            if (matched == 4) {
+                OutputStream out = client.getOutputStream();
+                out.write(response);
+                out.flush();
+            }
+        } catch (IOException ex) {
+            // client went away
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.apache.http.conn.DnsResolver;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// the servers only need to be listening, most are never referenced
+@SuppressWarnings("try")
+public class MultiAddressAnalyzerTest {
+
+    private static final InetAddress FIRST = address(127, 0, 0, 1);
+    private static final InetAddress SECOND = address(127, 0, 0, 2);
+    private static final InetAddress THIRD = address(127, 0, 0, 3);
+    private static final InetAddress UNREACHABLE = address(127, 0, 0, 4);
+
+    @Before
+    public void setUp() {
+        LoopbackTLSServer.useAsTrustStore();
+    }
+
+    @Test
+    public void sameConfiguration_shouldBeConsistent() throws Exception {
+        try (LoopbackTLSServer first = new LoopbackTLSServer(FIRST, 0, "{}");
+             LoopbackTLSServer second = new LoopbackTLSServer(SECOND, first.getPort(), "{}")) {
+            MultiAddressAnalyzer analyzer = new MultiAddressAnalyzer(new TLSSnifferService(), resolver(FIRST, SECOND), 2, 5000);
+            String url = "https://localhost:" + first.getPort() + "/";
+            // warms up, so the latency comparison isn't thrown off by class loading
+            analyzer.analyze(url, null, null);
+
+            MultiAddressReport report = analyzer.analyze(url, null, null);
+
+            assertThat(report.getAddresses()).extracting(AddressResult::getAddress).containsExactly(FIRST, SECOND);
+            assertThat(report.isConsistent()).isTrue();
+            assertThat(report.getOutliers()).isEmpty();
+            assertThat(report.getProtocols()).containsOnlyKeys("TLSv1.3");
+            assertThat(report.getCertificates()).hasSize(1).containsValue(2);
+            assertThat(report.getMedianHandshakeNanos()).isPositive();
+            // SNI and host name verification used the host name, not the address
+            for (AddressResult address : report.getAddresses()) {
+                assertThat(address.getConnection().getPeerHost()).isEqualTo("localhost");
+            }
+        }
+    }
+
+    @Test
+    public void divergingAddress_shouldBeReportedAgainstMajority() throws Exception {
+        try (LoopbackTLSServer first = new LoopbackTLSServer(FIRST, 0, "{}");
+             LoopbackTLSServer second = new LoopbackTLSServer(SECOND, first.getPort(), "{}");
+             LoopbackTLSServer third = new LoopbackTLSServer(THIRD, first.getPort(), "{}", "TLSv1.2")) {
+            MultiAddressAnalyzer analyzer = new MultiAddressAnalyzer(
+                    new TLSSnifferService(), resolver(FIRST, SECOND, THIRD, UNREACHABLE), 4, 5000);
+
+            MultiAddressReport report = analyzer.analyze("https://localhost:" + first.getPort() + "/", null, null);
+            System.out.println(report);
+
+            List<AddressResult> addresses = report.getAddresses();
+            assertThat(report.isConsistent()).isFalse();
+            assertThat(report.getProtocols()).containsEntry("TLSv1.3", 2).containsEntry("TLSv1.2", 1);
+            assertThat(addresses.get(0).getOutlierReasons()).noneMatch(reason -> reason.startsWith("protocol"));
+            assertThat(addresses.get(1).getOutlierReasons()).noneMatch(reason -> reason.startsWith("protocol"));
+            assertThat(addresses.get(2).getProtocol()).isEqualTo("TLSv1.2");
+            assertThat(addresses.get(2).getOutlierReasons())
+                    .anyMatch(reason -> reason.equals("protocol TLSv1.2, most addresses TLSv1.3"))
+                    .anyMatch(reason -> reason.startsWith("cipher suite "));
+            assertThat(addresses.get(3).isSuccessful()).isFalse();
+            assertThat(addresses.get(3).getOutlierReasons()).containsExactly("handshake failed");
+            assertThat(report.getOutliers()).extracting(AddressResult::getAddress).contains(THIRD, UNREACHABLE);
+            assertThat(report.toString())
+                    .contains("Host: localhost:" + first.getPort() + " (4 addresses)")
+                    .contains("Consistent: no")
+                    .contains("127.0.0.3: TLSv1.2, ")
+                    .contains("127.0.0.4: failed, ")
+                    .contains("\tOutlier: protocol TLSv1.2, most addresses TLSv1.3");
+        }
+    }
+
+    @Test
+    public void evenSplit_shouldFlagEveryAddress() throws Exception {
+        try (LoopbackTLSServer first = new LoopbackTLSServer(FIRST, 0, "{}");
+             LoopbackTLSServer second = new LoopbackTLSServer(SECOND, first.getPort(), "{}", "TLSv1.2")) {
+            MultiAddressAnalyzer analyzer = new MultiAddressAnalyzer(new TLSSnifferService(), resolver(FIRST, SECOND), 2, 5000);
+
+            MultiAddressReport report = analyzer.analyze("https://localhost:" + first.getPort() + "/", null, null);
+
+            List<AddressResult> addresses = report.getAddresses();
+            assertThat(report.getProtocols()).containsEntry("TLSv1.3", 1).containsEntry("TLSv1.2", 1);
+            assertThat(addresses.get(0).getOutlierReasons()).contains("protocol TLSv1.3, no majority");
+            assertThat(addresses.get(1).getOutlierReasons()).contains("protocol TLSv1.2, no majority");
+            assertThat(addresses.get(0).getOutlierReasons()).noneMatch(reason -> reason.startsWith("certificate"));
+            assertThat(report.getOutliers()).extracting(AddressResult::getAddress).containsExactly(FIRST, SECOND);
+        }
+    }
+
+    @Test
+    public void unknownCipher_shouldFailEveryAddress() throws Exception {
+        try (LoopbackTLSServer server = new LoopbackTLSServer(FIRST, 0, "{}")) {
+            MultiAddressAnalyzer analyzer = new MultiAddressAnalyzer(new TLSSnifferService(), resolver(FIRST, SECOND), 2, 5000);
+
+            MultiAddressReport report = analyzer.analyze(server.getUrl(), "TLSv1.2", "TLS_NOT_A_CIPHER_SUITE");
+
+            assertThat(report.getAddresses()).hasSize(2).noneMatch(AddressResult::isSuccessful);
+            assertThat(report.getAddresses().get(0).getError()).contains("TLS_NOT_A_CIPHER_SUITE");
+            assertThat(report.isConsistent()).isFalse();
+        }
+    }
+
+    private static DnsResolver resolver(InetAddress... addresses) {
+        return host -> {
+            if (!"localhost".equals(host)) {
+                throw new UnknownHostException(host);
+            }
+            return addresses.clone();
+        };
+    }
+
+    private static InetAddress address(int a, int b, int c, int d) {
+        try {
+            return InetAddress.getByAddress(new byte[]{(byte) a, (byte) b, (byte) c, (byte) d});
+        } catch (UnknownHostException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
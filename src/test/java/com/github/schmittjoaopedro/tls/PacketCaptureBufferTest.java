@@ -0,0 +1,74 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PacketCaptureBufferTest {
+
+    @Test
+    public void directionChanges_shouldSplitPackets() {
+        PacketCaptureBuffer captureBuffer = new PacketCaptureBuffer(new CaptureChunkPool(4, 8, false));
+        captureBuffer.append(true, new byte[]{0x16, 0x03, 0x03}, 0, 3);
+        captureBuffer.append(true, 0x00);
+        captureBuffer.append(false, new byte[]{0x01, 0x02, 0x03, 0x04, 0x05, 0x06}, 1, 5);
+        captureBuffer.append(true, new byte[]{0x17}, 0, 1);
+
+        assertThat(captureBuffer.getPacketsCount()).isEqualTo(3);
+        assertThat(captureBuffer.isOutputPacket(0)).isTrue();
+        assertThat(captureBuffer.isOutputPacket(1)).isFalse();
+        assertThat(captureBuffer.isOutputPacket(2)).isTrue();
+        assertThat(captureBuffer.getPacket(0)).containsExactly(0x16, 0x03, 0x03, 0x00);
+        assertThat(captureBuffer.getPacket(1)).containsExactly(0x02, 0x03, 0x04, 0x05, 0x06);
+        assertThat(captureBuffer.getPacket(2)).containsExactly(0x17);
+        assertThat(captureBuffer.getSize()).isEqualTo(10);
+    }
+
+    @Test
+    public void recycle_shouldReturnChunksToPool() {
+        CaptureChunkPool chunkPool = new CaptureChunkPool(4, 8, true);
+        PacketCaptureBuffer captureBuffer = new PacketCaptureBuffer(chunkPool);
+        captureBuffer.append(false, new byte[10], 0, 10);
+
+        captureBuffer.recycle();
+
+        assertThat(captureBuffer.getPacketsCount()).isZero();
+        assertThat(chunkPool.getPooledChunksCount()).isEqualTo(3);
+        captureBuffer.append(true, new byte[]{0x0a, 0x0b}, 0, 2);
+        assertThat(captureBuffer.getPacket(0)).containsExactly(0x0a, 0x0b);
+        assertThat(chunkPool.getPooledChunksCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void removeLast_shouldReachPastOtherDirection() {
+        PacketCaptureBuffer captureBuffer = new PacketCaptureBuffer(new CaptureChunkPool(3, 8, false));
+        captureBuffer.append(false, new byte[]{0x01, 0x02, 0x03, 0x04}, 0, 4);
+        captureBuffer.append(true, new byte[]{0x0a, 0x0b}, 0, 2);
+        captureBuffer.append(false, 0x05);
+        captureBuffer.append(true, 0x0c);
+
+        assertThat(captureBuffer.removeLast(false, 3)).isTrue();
+
+        assertThat(captureBuffer.getPacketsCount()).isEqualTo(2);
+        assertThat(captureBuffer.getPacket(0)).containsExactly(0x01, 0x02);
+        assertThat(captureBuffer.getPacket(1)).containsExactly(0x0a, 0x0b, 0x0c);
+        assertThat(captureBuffer.getSize()).isEqualTo(5);
+        assertThat(captureBuffer.removeLast(false, 3)).isFalse();
+        assertThat(captureBuffer.getSize()).isEqualTo(5);
+    }
+
+    @Test
+    public void appendHex_shouldSpanChunks() throws IOException {
+        PacketCaptureBuffer captureBuffer = new PacketCaptureBuffer(new CaptureChunkPool(3, 8, false));
+        captureBuffer.append(false, new byte[]{0x01}, 0, 1);
+        captureBuffer.append(true, new byte[]{0x16, 0x03, 0x03, 0x00, (byte) 0xab}, 0, 5);
+        StringBuilder hex = new StringBuilder();
+
+        captureBuffer.appendHex(1, hex);
+
+        assertThat(hex.toString()).isEqualTo("16030300ab");
+    }
+
+}
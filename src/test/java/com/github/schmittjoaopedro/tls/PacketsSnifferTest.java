@@ -0,0 +1,237 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PacketsSnifferTest {
+
+    private static final int CONNECTIONS = 16;
+    private static final int MESSAGES = 200;
+
+    private ServerSocket echoServer;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws IOException {
+        echoServer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        executor = Executors.newCachedThreadPool();
+        executor.submit(() -> {
+            while (!echoServer.isClosed()) {
+                Socket socket = echoServer.accept();
+                executor.submit(() -> echo(socket));
+            }
+            return null;
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        echoServer.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentConnections_shouldCaptureIndependently() throws Exception {
+        PacketsSniffer packetsSniffer = new PacketsSniffer();
+        List<Future<Socket>> connections = new ArrayList<>();
+        for (int i = 0; i < CONNECTIONS; i++) {
+            final byte marker = (byte) i;
+            connections.add(executor.submit(() -> exchange(packetsSniffer, marker)));
+        }
+
+        for (int i = 0; i < CONNECTIONS; i++) {
+            Socket socket = connections.get(i).get();
+            PacketCaptureSession captureSession = packetsSniffer.getCaptureSession(socket);
+            PacketCaptureBuffer captureBuffer = captureSession.getCaptureBuffer();
+            assertThat(captureBuffer.getSize()).isEqualTo(2L * MESSAGES);
+            for (int packet = 0; packet < captureBuffer.getPacketsCount(); packet++) {
+                assertThat(captureBuffer.getPacket(packet)).containsOnly((byte) i);
+            }
+            socket.close();
+        }
+        assertThat(packetsSniffer.getCaptureSessions()).hasSize(CONNECTIONS);
+    }
+
+    @Test
+    public void sampling_shouldGivePlainSocketsToSkippedConnections() throws Exception {
+        PacketsSniffer packetsSniffer = new PacketsSniffer(CaptureChunkPool.getDefault(), false,
+                new CapturePolicy(CapturePolicy.UNLIMITED, CapturePolicy.UNLIMITED, 4));
+        List<Socket> sockets = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            sockets.add(packetsSniffer.createSnifferSocket());
+        }
+
+        assertThat(packetsSniffer.getCaptureSessions()).hasSize(2);
+        for (int i = 0; i < sockets.size(); i++) {
+            assertThat(packetsSniffer.getCaptureSession(sockets.get(i)) != null).isEqualTo(i % 4 == 0);
+        }
+    }
+
+    @Test
+    public void byteLimit_shouldTruncateCapture() throws Exception {
+        PacketsSniffer packetsSniffer = new PacketsSniffer(CaptureChunkPool.getDefault(), false,
+                new CapturePolicy(CapturePolicy.UNLIMITED, 50, 1));
+        try (Socket socket = exchange(packetsSniffer, (byte) 1)) {
+            PacketCaptureSession captureSession = packetsSniffer.getCaptureSession(socket);
+
+            assertThat(captureSession.getCaptureBuffer().getSize()).isEqualTo(50);
+            assertThat(captureSession.isCapturing()).isFalse();
+            assertThat(captureSession.isCaptureTruncated()).isTrue();
+        }
+    }
+
+    @Test
+    public void applicationRecordLimit_shouldStopAtRecordBoundary() {
+        byte[] handshakeRecord = {0x16, 0x03, 0x03, 0x00, 0x04, 0x0e, 0x00, 0x00, 0x00};
+        byte[] applicationRecords = {
+                0x17, 0x03, 0x03, 0x00, 0x02, 0x01, 0x02,
+                0x17, 0x03, 0x03, 0x00, 0x01, 0x03,
+                0x17, 0x03, 0x03, 0x00, 0x01, 0x04
+        };
+        PacketsSniffer packetsSniffer = new PacketsSniffer(CaptureChunkPool.getDefault(), true,
+                new CapturePolicy(2, CapturePolicy.UNLIMITED, 1));
+        Socket socket = packetsSniffer.createSnifferSocket();
+        PacketCaptureSession captureSession = packetsSniffer.getCaptureSession(socket);
+        captureSession.captureInput(handshakeRecord, 0, handshakeRecord.length);
+        packetsSniffer.onHandshakeCompleted(socket, socket);
+        captureSession.captureInput(applicationRecords, 0, 8);
+        captureSession.captureInput(applicationRecords, 8, applicationRecords.length - 8);
+        captureSession.captureOutput(0x17);
+
+        PacketCaptureBuffer captureBuffer = captureSession.getCaptureBuffer();
+        assertThat(captureBuffer.getSize()).isEqualTo(handshakeRecord.length + 13);
+        assertThat(captureSession.isCaptureTruncated()).isTrue();
+        assertThat(captureSession.getRecordLog().getLog().split("ApplicationData", -1)).hasSize(3);
+    }
+
+    @Test
+    public void applicationRecordLimit_shouldDropPartialHeaderFedByteByByte() {
+        byte[] handshakeRecord = {0x16, 0x03, 0x03, 0x00, 0x04, 0x0e, 0x00, 0x00, 0x00};
+        byte[] applicationRecords = {
+                0x17, 0x03, 0x03, 0x00, 0x01, 0x01,
+                0x17, 0x03, 0x03, 0x00, 0x01, 0x02
+        };
+        PacketsSniffer packetsSniffer = new PacketsSniffer(CaptureChunkPool.getDefault(), false,
+                new CapturePolicy(1, CapturePolicy.UNLIMITED, 1));
+        Socket socket = packetsSniffer.createSnifferSocket();
+        PacketCaptureSession captureSession = packetsSniffer.getCaptureSession(socket);
+        captureSession.captureInput(handshakeRecord, 0, handshakeRecord.length);
+        packetsSniffer.onHandshakeCompleted(socket, socket);
+        for (byte b : applicationRecords) {
+            captureSession.captureInput(b);
+        }
+
+        PacketCaptureBuffer captureBuffer = captureSession.getCaptureBuffer();
+        assertThat(captureBuffer.getSize()).isEqualTo(handshakeRecord.length + 6);
+        assertThat(captureBuffer.getPacketsCount()).isEqualTo(1);
+        assertThat(captureSession.isCaptureTruncated()).isTrue();
+    }
+
+    @Test
+    public void applicationRecordLimit_shouldDropPartialHeaderSpanningReads() {
+        byte[] applicationRecords = {
+                0x17, 0x03, 0x03, 0x00, 0x01, 0x01,
+                0x17, 0x03, 0x03, 0x00, 0x01, 0x02
+        };
+        PacketsSniffer packetsSniffer = new PacketsSniffer(CaptureChunkPool.getDefault(), false,
+                new CapturePolicy(1, CapturePolicy.UNLIMITED, 1));
+        Socket socket = packetsSniffer.createSnifferSocket();
+        PacketCaptureSession captureSession = packetsSniffer.getCaptureSession(socket);
+        packetsSniffer.onHandshakeCompleted(socket, socket);
+        captureSession.captureInput(applicationRecords, 0, 8);
+        captureSession.captureInput(applicationRecords, 8, applicationRecords.length - 8);
+
+        assertThat(captureSession.getCaptureBuffer().getSize()).isEqualTo(6);
+        assertThat(captureSession.isCaptureTruncated()).isTrue();
+    }
+
+    @Test
+    public void applicationRecordLimit_shouldDropPartialHeaderInterleavedWithOtherDirection() {
+        byte[] applicationRecords = {
+                0x17, 0x03, 0x03, 0x00, 0x01, 0x01,
+                0x17, 0x03, 0x03, 0x00, 0x01, 0x02
+        };
+        byte[] alertRecord = {0x15, 0x03, 0x03, 0x00, 0x02, 0x01, 0x00};
+        PacketsSniffer packetsSniffer = new PacketsSniffer(CaptureChunkPool.getDefault(), false,
+                new CapturePolicy(1, CapturePolicy.UNLIMITED, 1));
+        Socket socket = packetsSniffer.createSnifferSocket();
+        PacketCaptureSession captureSession = packetsSniffer.getCaptureSession(socket);
+        packetsSniffer.onHandshakeCompleted(socket, socket);
+        captureSession.captureInput(applicationRecords, 0, 8);
+        captureSession.captureOutput(alertRecord, 0, alertRecord.length);
+        for (int i = 8; i < applicationRecords.length; i++) {
+            captureSession.captureInput(applicationRecords[i]);
+        }
+
+        PacketCaptureBuffer captureBuffer = captureSession.getCaptureBuffer();
+        assertThat(captureBuffer.getPacketsCount()).isEqualTo(2);
+        assertThat(captureBuffer.getPacket(0)).containsExactly(0x17, 0x03, 0x03, 0x00, 0x01, 0x01);
+        assertThat(captureBuffer.getPacket(1)).containsExactly(alertRecord);
+        assertThat(captureSession.isCaptureTruncated()).isTrue();
+    }
+
+    @Test
+    public void releaseOnClose_shouldOnlyKeepOpenConnections() throws Exception {
+        PacketsSniffer packetsSniffer = new PacketsSniffer(CaptureChunkPool.getDefault(), false,
+                new CapturePolicy(CapturePolicy.UNLIMITED, CapturePolicy.UNLIMITED, 1, true));
+        List<Long> closedSizes = new ArrayList<>();
+        packetsSniffer.addCaptureSessionListener(captureSession -> closedSizes.add(captureSession.getCaptureBuffer().getSize()));
+        try (Socket open = exchange(packetsSniffer, (byte) -1)) {
+            for (int i = 0; i < 100; i++) {
+                Socket socket = exchange(packetsSniffer, (byte) i);
+                PacketCaptureSession captureSession = packetsSniffer.getCaptureSession(socket);
+                socket.close();
+                socket.close();
+
+                assertThat(captureSession.isClosed()).isTrue();
+                assertThat(captureSession.getCaptureBuffer().getSize()).isZero();
+                assertThat(packetsSniffer.getCaptureSessions()).containsExactly(packetsSniffer.getCaptureSession(open));
+            }
+        }
+
+        assertThat(packetsSniffer.getCaptureSessions()).isEmpty();
+        assertThat(closedSizes).hasSize(101).containsOnly(2L * MESSAGES);
+    }
+
+    private Socket exchange(PacketsSniffer packetsSniffer, byte marker) throws IOException {
+        Socket socket = packetsSniffer.createSnifferSocket();
+        socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), echoServer.getLocalPort()), 1000);
+        packetsSniffer.onHandshakeStarted(socket);
+        OutputStream out = socket.getOutputStream();
+        InputStream in = socket.getInputStream();
+        for (int i = 0; i < MESSAGES; i++) {
+            out.write(marker);
+            assertThat(in.read()).isEqualTo(marker & 0xff);
+        }
+        return socket;
+    }
+
+    private Void echo(Socket socket) throws IOException {
+        try (Socket client = socket) {
+            InputStream in = client.getInputStream();
+            OutputStream out = client.getOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                out.write(b);
+            }
+        }
+        return null;
+    }
+
+}
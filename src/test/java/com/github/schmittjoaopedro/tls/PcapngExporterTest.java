@@ -0,0 +1,156 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PcapngExporterTest {
+
+    private static final byte[] CLIENT_HELLO = {0x16, 0x03, 0x01, 0x00, 0x02, 0x01, 0x00};
+    private static final byte[] SERVER_HELLO = {0x16, 0x03, 0x03, 0x00, 0x02, 0x02, 0x00};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void export_shouldWriteTcpConversationWithCapturedPayloads() throws Exception {
+        PacketsSniffer packetsSniffer = new PacketsSniffer();
+        PacketCaptureSession captureSession = newCaptureSession(packetsSniffer);
+        captureSession.captureOutput(CLIENT_HELLO, 0, CLIENT_HELLO.length);
+        captureSession.captureInput(SERVER_HELLO, 0, SERVER_HELLO.length);
+        Path file = temporaryFolder.newFile("capture.pcapng").toPath();
+
+        try (PcapngExporter exporter = new PcapngExporter(file)) {
+            exporter.export(captureSession);
+            exporter.finish(captureSession);
+        }
+
+        ByteBuffer pcapng = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        assertThat(pcapng.getInt(0)).isEqualTo(0x0A0D0D0A);
+        assertThat(pcapng.getInt(8)).isEqualTo(0x1A2B3C4D);
+        List<byte[]> packets = readPackets(pcapng);
+        // SYN, SYN-ACK, ACK, two segments, FIN-ACK, FIN-ACK, ACK
+        assertThat(packets).hasSize(8);
+        assertThat(tcpFlags(packets.get(0))).isEqualTo(0x02);
+        assertThat(tcpFlags(packets.get(1))).isEqualTo(0x12);
+        assertThat(payload(packets.get(3))).isEqualTo(CLIENT_HELLO);
+        assertThat(payload(packets.get(4))).isEqualTo(SERVER_HELLO);
+        assertThat(tcpFlags(packets.get(5))).isEqualTo(0x11);
+        // client to server, then server to client, with the remote address kept
+        assertThat(Arrays.copyOfRange(packets.get(3), 16, 20)).containsExactly(127, 0, 0, 1);
+        assertThat(Arrays.copyOfRange(packets.get(4), 12, 16)).containsExactly(127, 0, 0, 1);
+        assertThat(ByteBuffer.wrap(packets.get(4)).getInt(24)).isEqualTo(1);
+        assertThat(ByteBuffer.wrap(packets.get(4)).getInt(28)).isEqualTo(1 + CLIENT_HELLO.length);
+    }
+
+    @Test
+    public void repeatedExports_shouldOnlyAppendNewPackets() throws Exception {
+        PacketsSniffer packetsSniffer = new PacketsSniffer();
+        PacketCaptureSession captureSession = newCaptureSession(packetsSniffer);
+        Path file = temporaryFolder.newFile("incremental.pcapng").toPath();
+
+        try (PcapngExporter exporter = new PcapngExporter(file)) {
+            captureSession.captureOutput(CLIENT_HELLO, 0, CLIENT_HELLO.length);
+            exporter.exportAll(packetsSniffer);
+            exporter.flush();
+            captureSession.captureInput(SERVER_HELLO, 0, SERVER_HELLO.length);
+            exporter.exportAll(packetsSniffer);
+        }
+
+        List<byte[]> packets = readPackets(ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN));
+        assertThat(packets).hasSize(5);
+        assertThat(payload(packets.get(4))).isEqualTo(SERVER_HELLO);
+    }
+
+    @Test
+    public void finishedSession_shouldNotBeExportedAgain() throws Exception {
+        PacketsSniffer packetsSniffer = new PacketsSniffer();
+        PacketCaptureSession captureSession = newCaptureSession(packetsSniffer);
+        captureSession.captureOutput(CLIENT_HELLO, 0, CLIENT_HELLO.length);
+        Path file = temporaryFolder.newFile("finished.pcapng").toPath();
+
+        try (PcapngExporter exporter = new PcapngExporter(file)) {
+            exporter.exportAll(packetsSniffer);
+            exporter.finish(captureSession);
+            exporter.exportAll(packetsSniffer);
+            exporter.exportAll(packetsSniffer);
+        }
+
+        List<byte[]> packets = readPackets(ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN));
+        // SYN, SYN-ACK, ACK, one segment, FIN-ACK, FIN-ACK, ACK
+        assertThat(packets).hasSize(7);
+        assertThat(packets.stream().filter(packet -> tcpFlags(packet) == 0x02)).hasSize(1);
+    }
+
+    @Test
+    public void closedSocket_shouldBeFinishedBeforeRelease() throws Exception {
+        PacketsSniffer packetsSniffer = new PacketsSniffer(CaptureChunkPool.getDefault(), false,
+                new CapturePolicy(CapturePolicy.UNLIMITED, CapturePolicy.UNLIMITED, 1, true));
+        Socket socket = packetsSniffer.createSnifferSocket();
+        PacketCaptureSession captureSession = packetsSniffer.getCaptureSession(socket);
+        captureSession.markConnectStarted(new InetSocketAddress("127.0.0.1", 443));
+        captureSession.markConnectCompleted();
+        captureSession.captureOutput(CLIENT_HELLO, 0, CLIENT_HELLO.length);
+        Path file = temporaryFolder.newFile("closed.pcapng").toPath();
+
+        try (PcapngExporter exporter = new PcapngExporter(file)) {
+            packetsSniffer.addCaptureSessionListener(exporter);
+            exporter.exportAll(packetsSniffer);
+            socket.close();
+            exporter.exportAll(packetsSniffer);
+        }
+
+        assertThat(packetsSniffer.getCaptureSessions()).isEmpty();
+        List<byte[]> packets = readPackets(ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN));
+        // SYN, SYN-ACK, ACK, one segment, FIN-ACK, FIN-ACK, ACK
+        assertThat(packets).hasSize(7);
+        assertThat(payload(packets.get(3))).isEqualTo(CLIENT_HELLO);
+        assertThat(tcpFlags(packets.get(4))).isEqualTo(0x11);
+    }
+
+    private PacketCaptureSession newCaptureSession(PacketsSniffer packetsSniffer) {
+        Socket socket = packetsSniffer.createSnifferSocket();
+        PacketCaptureSession captureSession = packetsSniffer.getCaptureSession(socket);
+        captureSession.markConnectStarted(new InetSocketAddress("127.0.0.1", 443));
+        captureSession.markConnectCompleted();
+        return captureSession;
+    }
+
+    private static List<byte[]> readPackets(ByteBuffer pcapng) {
+        List<byte[]> packets = new ArrayList<>();
+        int position = 0;
+        while (position < pcapng.limit()) {
+            int blockType = pcapng.getInt(position);
+            int blockLength = pcapng.getInt(position + 4);
+            assertThat(pcapng.getInt(position + blockLength - 4)).isEqualTo(blockLength);
+            if (blockType == 6) {
+                byte[] packet = new byte[pcapng.getInt(position + 20)];
+                pcapng.position(position + 28);
+                pcapng.get(packet);
+                packets.add(packet);
+            }
+            position += blockLength;
+        }
+        return packets;
+    }
+
+    private static int tcpFlags(byte[] packet) {
+        return packet[33] & 0xff;
+    }
+
+    private static byte[] payload(byte[] packet) {
+        return Arrays.copyOfRange(packet, 40, packet.length);
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.schmittjoaopedro.tls;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.InetAddress;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class ResponseModeTest {
+
+    private static final int LARGE_BODY_SIZE = 512 * 1024;
+
+    @Before
+    public void setUp() {
+        LoopbackTLSServer.useAsTrustStore();
+    }
+
+    @Test
+    public void statusOnly_shouldNotReadBody() throws Exception {
+        try (LoopbackTLSServer server = new LoopbackTLSServer()) {
+            AnalysisResult result = analyze(server, ResponseMode.STATUS_ONLY);
+
+            ResponseResult response = result.getResponse();
+            assertThat(response.getStatus()).isEqualTo(200);
+            assertThat(response.getBody()).isNull();
+            assertThat(response.getBodyBytes()).isZero();
+            assertThat(response.isTruncated()).isTrue();
+            assertThat(response.getFirstByteNanos()).isEqualTo(-1);
+            assertThat(result.toText()).contains("Response status: 200").doesNotContain("Response body");
+        }
+    }
+
+    @Test
+    public void firstBytes_shouldTruncateBody() throws Exception {
+        try (LoopbackTLSServer server = new LoopbackTLSServer()) {
+            AnalysisResult result = analyze(server, ResponseMode.firstBytes(5));
+
+            ResponseResult response = result.getResponse();
+            assertThat(response.getBody()).isEqualTo("{\"sta");
+            assertThat(response.getBodyBytes()).isEqualTo(5);
+            assertThat(response.isTruncated()).isTrue();
+            assertThat(result.toText()).contains("Response body  : {\"sta... (first 5 bytes)");
+        }
+    }
+
+    @Test
+    public void firstBytes_shouldKeepShorterBodyWhole() throws Exception {
+        try (LoopbackTLSServer server = new LoopbackTLSServer()) {
+            ResponseResult response = analyze(server, ResponseMode.firstBytes(1024)).getResponse();
+
+            assertThat(response.getBody()).isEqualTo("{\"status\":\"ok\"}");
+            assertThat(response.isTruncated()).isFalse();
+        }
+    }
+
+    @Test
+    public void drain_shouldTimeDownloadWithoutKeepingBody() throws Exception {
+        String body = StringUtils.repeat('x', LARGE_BODY_SIZE);
+        try (LoopbackTLSServer server = new LoopbackTLSServer(InetAddress.getLoopbackAddress(), 0, body)) {
+            AnalysisResult result = analyze(server, ResponseMode.DRAIN);
+
+            ResponseResult response = result.getResponse();
+            assertThat(response.getBody()).isNull();
+            assertThat(response.getBodyBytes()).isEqualTo(LARGE_BODY_SIZE);
+            assertThat(response.isTruncated()).isFalse();
+            assertThat(response.getFirstByteNanos()).isGreaterThanOrEqualTo(response.getHeadersNanos());
+            assertThat(response.getDownloadNanos()).isPositive();
+            assertThat(response.getThroughputBytesPerSecond()).isPositive();
+            assertThat(result.toText())
+                    .contains("Response body  : " + LARGE_BODY_SIZE + " bytes drained")
+                    .contains("Time to first byte: ")
+                    .contains("KB/s)");
+        }
+    }
+
+    @Test
+    public void repeatedAnalyses_shouldNotLeakSockets() throws Exception {
+        OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+        assumeTrue(operatingSystem instanceof UnixOperatingSystemMXBean);
+        UnixOperatingSystemMXBean unixOperatingSystem = (UnixOperatingSystemMXBean) operatingSystem;
+        try (LoopbackTLSServer server = new LoopbackTLSServer()) {
+            // warms up class loading and the shared caches
+            analyze(server, ResponseMode.firstBytes(5));
+            analyze(server, ResponseMode.STATUS_ONLY);
+            long openFiles = unixOperatingSystem.getOpenFileDescriptorCount();
+
+            for (int i = 0; i < 50; i++) {
+                analyze(server, i % 2 == 0 ? ResponseMode.firstBytes(5) : ResponseMode.STATUS_ONLY);
+            }
+
+            assertThat(unixOperatingSystem.getOpenFileDescriptorCount()).isLessThan(openFiles + 10);
+        }
+    }
+
+    private static AnalysisResult analyze(LoopbackTLSServer server, ResponseMode responseMode) {
+        AnalysisResult result = new TLSSnifferService().analyze(
+                new AnalysisTarget(server.getUrl(), "TLSv1.2", null, false), 5000, responseMode);
+        assertThat(result.getError()).isNull();
+        return result;
+    }
+}
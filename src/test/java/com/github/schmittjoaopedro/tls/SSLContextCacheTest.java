@@ -0,0 +1,106 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.net.ssl.SSLContext;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SSLContextCacheTest {
+
+    private static final String TRUST_STORE = "certs/truststore.p12";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void sameKey_shouldReuseContext() throws Exception {
+        SSLContextCache cache = new SSLContextCache(4);
+        SSLContext first = cache.getSSLContext(TRUST_STORE, "PKCS12", "truststore", "TLSv1.2");
+        SSLContext second = cache.getSSLContext(TRUST_STORE, "PKCS12", "truststore", "TLSv1.2");
+        SSLContext otherProtocol = cache.getSSLContext(TRUST_STORE, "PKCS12", "truststore", "TLSv1.3");
+
+        assertThat(second).isSameAs(first);
+        assertThat(otherProtocol).isNotSameAs(first);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void fullCache_shouldEvictLeastRecentlyUsed() throws Exception {
+        SSLContextCache cache = new SSLContextCache(2);
+        SSLContext tls12 = cache.getSSLContext(TRUST_STORE, "PKCS12", "truststore", "TLSv1.2");
+        cache.getSSLContext(TRUST_STORE, "PKCS12", "truststore", "TLSv1.3");
+        cache.getSSLContext(TRUST_STORE, "PKCS12", "truststore", "TLSv1.2");
+        cache.getSSLContext(TRUST_STORE, "PKCS12", "truststore", "TLS");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+        assertThat(cache.getSSLContext(TRUST_STORE, "PKCS12", "truststore", "TLSv1.2")).isSameAs(tls12);
+    }
+
+    @Test
+    public void changedTrustStoreFile_shouldReloadContext() throws Exception {
+        File trustStore = temporaryFolder.newFile("truststore.p12");
+        try (InputStream resource = getClass().getClassLoader().getResourceAsStream(TRUST_STORE)) {
+            Files.copy(resource, trustStore.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        SSLContextCache cache = new SSLContextCache(2);
+        SSLContext first = cache.getSSLContext(trustStore.getAbsolutePath(), "PKCS12", "truststore", "TLSv1.2");
+
+        assertThat(trustStore.setLastModified(trustStore.lastModified() - 60_000)).isTrue();
+        SSLContext reloaded = cache.getSSLContext(trustStore.getAbsolutePath(), "PKCS12", "truststore", "TLSv1.2");
+
+        assertThat(reloaded).isNotSameAs(first);
+        assertThat(cache.getReloadCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void concurrentMisses_shouldLoadKeyOnce() throws Exception {
+        SSLContextCache cache = new SSLContextCache(4);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<SSLContext>> lookups = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                lookups.add(executor.submit(() -> {
+                    start.await();
+                    return cache.getSSLContext(TRUST_STORE, "PKCS12", "truststore", "TLSv1.2");
+                }));
+            }
+            start.countDown();
+            SSLContext first = lookups.get(0).get();
+            for (Future<SSLContext> lookup : lookups) {
+                assertThat(lookup.get()).isSameAs(first);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(7);
+    }
+
+    @Test
+    public void failedLoad_shouldNotBeCached() throws Exception {
+        SSLContextCache cache = new SSLContextCache(4);
+
+        assertThatThrownBy(() -> cache.getSSLContext("certs/missing.p12", "PKCS12", "truststore", "TLSv1.2"))
+                .isInstanceOf(FileNotFoundException.class);
+        assertThat(cache.size()).isZero();
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SSLEngineProbeTest {
+
+    @Before
+    public void setUp() {
+        LoopbackTLSServer.useAsTrustStore();
+    }
+
+    @Test
+    public void concurrentProbes_shouldReportEveryHandshake() throws Exception {
+        try (LoopbackTLSServer server = new LoopbackTLSServer();
+             SSLEngineProbe probe = new SSLEngineProbe(new TLSSnifferService(), 2, 10000)) {
+            List<CompletableFuture<String>> reports = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                reports.add(probe.probe(new AnalysisTarget(server.getUrl(), "TLSv1.2", null, i == 0)));
+            }
+
+            String detailedReport = reports.get(0).get();
+            System.out.println(detailedReport);
+            assertThat(detailedReport)
+                    .contains("Handshake completed")
+                    .contains("Protocol: TLSv1.2")
+                    .contains("X509 Certificate: CN=localhost")
+                    .contains("TLS handshake timings")
+                    .contains("Handshake: ")
+                    .contains("Output packet: \n160303")
+                    .contains("Input packet: \n160303");
+            for (CompletableFuture<String> report : reports) {
+                assertThat(report.get()).contains("Handshake completed").contains("TLS session information");
+            }
+        }
+    }
+
+    @Test
+    public void protocolTLS13_shouldCompleteHandshake() throws Exception {
+        try (LoopbackTLSServer server = new LoopbackTLSServer();
+             SSLEngineProbe probe = new SSLEngineProbe(new TLSSnifferService(), 1, 10000)) {
+            String report = probe.probe(new AnalysisTarget(server.getUrl(), "TLSv1.3", null, true)).get();
+
+            assertThat(report).contains("Handshake completed").contains("Protocol: TLSv1.3").contains("ServerHello");
+        }
+    }
+
+    @Test
+    public void unsupportedProtocol_shouldReportError() throws Exception {
+        try (LoopbackTLSServer server = new LoopbackTLSServer("TLSv1.2");
+             SSLEngineProbe probe = new SSLEngineProbe(new TLSSnifferService(), 1, 10000)) {
+            String report = probe.probe(new AnalysisTarget(server.getUrl(), "TLSv1.3", null, false)).get();
+
+            assertThat(report).contains("Error probing endpoint").doesNotContain("Handshake completed");
+        }
+    }
+
+    @Test
+    public void silentServer_shouldTimeOut() throws Exception {
+        try (ServerSocket silentServer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+             SSLEngineProbe probe = new SSLEngineProbe(new TLSSnifferService(), 1, 200)) {
+            String url = "https://localhost:" + silentServer.getLocalPort() + "/";
+            String report = probe.probe(new AnalysisTarget(url, "TLSv1.2", null, false)).get();
+
+            assertThat(report).contains("Error probing endpoint").contains("timed out");
+        }
+    }
+}
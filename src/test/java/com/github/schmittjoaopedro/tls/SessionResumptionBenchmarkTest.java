@@ -0,0 +1,42 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SessionResumptionBenchmarkTest {
+
+    @Before
+    public void setUp() {
+        LoopbackTLSServer.useAsTrustStore();
+    }
+
+    @Test
+    public void protocolTLS12_shouldResumeAfterFirstHandshake() throws Exception {
+        try (LoopbackTLSServer server = new LoopbackTLSServer()) {
+            SessionResumptionBenchmark benchmark = new SessionResumptionBenchmark(new TLSSnifferService(), 5000);
+            SessionResumptionReport report = benchmark.run(server.getUrl(), "TLSv1.2", null, 5);
+            System.out.println(report);
+
+            assertThat(report.getCount(HandshakeKind.FULL)).isEqualTo(1);
+            assertThat(report.getCount(HandshakeKind.RESUMED)).isEqualTo(4);
+            assertThat(report.getDistinctSessionIds()).isEqualTo(1);
+            assertThat(report.getAverageInputBytes(HandshakeKind.FULL)).isGreaterThan(report.getAverageInputBytes(HandshakeKind.RESUMED));
+        }
+    }
+
+    @Test
+    public void protocolTLS13_shouldResumeWithPreSharedKey() throws Exception {
+        try (LoopbackTLSServer server = new LoopbackTLSServer()) {
+            SessionResumptionBenchmark benchmark = new SessionResumptionBenchmark(new TLSSnifferService(), 5000);
+            SessionResumptionReport report = benchmark.run(server.getUrl(), "TLSv1.3", null, 5);
+            System.out.println(report);
+
+            assertThat(report.getCount(HandshakeKind.FULL)).isGreaterThanOrEqualTo(1);
+            assertThat(report.getCount(HandshakeKind.RESUMED)).isGreaterThanOrEqualTo(1);
+            assertThat(report.getCount(HandshakeKind.FAILED)).isZero();
+        }
+    }
+
+}
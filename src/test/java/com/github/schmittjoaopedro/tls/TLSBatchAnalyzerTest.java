@@ -0,0 +1,56 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TLSBatchAnalyzerTest {
+
+    @Before
+    public void setUp() {
+        System.setProperty("javax.net.ssl.trustStoreType", "PKCS12");
+        System.setProperty("javax.net.ssl.trustStore", "certs/truststore.p12");
+        System.setProperty("javax.net.ssl.trustStorePassword", "truststore");
+    }
+
+    @Test
+    public void unreachableTargets_shouldStreamOneReportPerTarget() throws InterruptedException {
+        List<AnalysisTarget> targets = Arrays.asList(
+                new AnalysisTarget("https://127.0.0.1:1/", "TLSv1.2", null, false),
+                new AnalysisTarget("https://127.0.0.1:2/", "TLSv1.2", null, false),
+                new AnalysisTarget("https://127.0.0.1:3/", null, null, false));
+        List<AnalysisTarget> completed = new ArrayList<>();
+        List<String> logs = new ArrayList<>();
+
+        new TLSBatchAnalyzer(new TLSSnifferService(), 2, 1000).analyze(targets,
+                BatchAnalysisListener.text((target, analysisLog, elapsedNanos) -> {
+                    completed.add(target);
+                    logs.add(analysisLog);
+                }));
+
+        assertThat(completed).containsExactlyInAnyOrderElementsOf(targets);
+        assertThat(logs).allMatch(log -> log.contains("Error requesting URL"));
+        assertThat(logs).allMatch(log -> log.contains("Request TLS global information"));
+    }
+
+    @Test
+    public void typedListener_shouldReceiveResults() throws InterruptedException {
+        List<AnalysisTarget> targets = Arrays.asList(
+                new AnalysisTarget("https://127.0.0.1:1/", "TLSv1.2", null, false),
+                new AnalysisTarget("https://127.0.0.1:2/", null, null, false));
+        List<AnalysisResult> results = new ArrayList<>();
+
+        new TLSBatchAnalyzer(new TLSSnifferService(), 2, 1000).analyze(targets, (analysisResult, elapsedNanos) -> {
+            results.add(analysisResult);
+            analysisResult.release();
+        });
+
+        assertThat(results).extracting(AnalysisResult::getTarget).containsExactlyInAnyOrderElementsOf(targets);
+        assertThat(results).noneMatch(AnalysisResult::isSuccessful);
+    }
+}
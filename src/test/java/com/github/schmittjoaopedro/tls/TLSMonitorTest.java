@@ -0,0 +1,197 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.apache.http.conn.DnsResolver;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TLSMonitorTest {
+
+    @Before
+    public void setUp() {
+        LoopbackTLSServer.useAsTrustStore();
+    }
+
+    @Test
+    public void readTargets_shouldSkipCommentsAndDefaults() throws Exception {
+        String targetsFile = "# monitored endpoints\n"
+                + "https://example.com/\n"
+                + "\n"
+                + "https://example.org:8443/ TLSv1.2 TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256\n"
+                + "https://example.net/ - TLS_AES_128_GCM_SHA256\n";
+
+        List<AnalysisTarget> targets = TLSMonitor.readTargets(new BufferedReader(new StringReader(targetsFile)));
+
+        assertThat(targets).hasSize(3);
+        assertThat(targets.get(0).getUrl()).isEqualTo("https://example.com/");
+        assertThat(targets.get(0).getProtocol()).isNull();
+        assertThat(targets.get(1).getProtocol()).isEqualTo("TLSv1.2");
+        assertThat(targets.get(1).getCipher()).isEqualTo("TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256");
+        assertThat(targets.get(2).getProtocol()).isNull();
+        assertThat(targets.get(2).getCipher()).isEqualTo("TLS_AES_128_GCM_SHA256");
+    }
+
+    @Test
+    public void protocolDowngrade_shouldRaiseProtocolChange() throws Exception {
+        List<MonitorChange> changes = new CopyOnWriteArrayList<>();
+        TLSSnifferService snifferService = new TLSSnifferService();
+        LoopbackTLSServer server = new LoopbackTLSServer();
+        int port = server.getPort();
+        AnalysisTarget target = new AnalysisTarget(server.getUrl(), null, null, false);
+        try (SSLEngineProbe probe = new SSLEngineProbe(snifferService, 1, 5000);
+             TLSMonitor monitor = new TLSMonitor(snifferService, probe, 100, 10, 1, 60000,
+                     (changedTarget, change, previous, current) -> changes.add(change))) {
+            monitor.addTargets(Collections.singletonList(target));
+            MonitorResult baseline = awaitResult(monitor, target, "TLSv1.3");
+            assertThat(baseline.getCertificateFingerprint()).isNotEmpty();
+            assertThat(baseline.getHandshakeNanos()).isPositive();
+            assertThat(changes).isEmpty();
+
+            server.close();
+            server = new LoopbackTLSServer(InetAddress.getLoopbackAddress(), port, "{}", "TLSv1.2");
+            awaitResult(monitor, target, "TLSv1.2");
+
+            assertThat(changes).contains(MonitorChange.PROTOCOL, MonitorChange.CIPHER_SUITE)
+                    .doesNotContain(MonitorChange.CERTIFICATE, MonitorChange.LATENCY_THRESHOLD);
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test
+    public void metricsEndpoint_shouldServePrometheusText() throws Exception {
+        TLSSnifferService snifferService = new TLSSnifferService();
+        try (LoopbackTLSServer server = new LoopbackTLSServer("TLSv1.2");
+             SSLEngineProbe probe = new SSLEngineProbe(snifferService, 1, 5000);
+             TLSMonitor monitor = new TLSMonitor(snifferService, probe, 100, 10, 2, 60000, null);
+             MonitorMetricsEndpoint endpoint = new MonitorMetricsEndpoint(
+                     new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), monitor)) {
+            AnalysisTarget target = new AnalysisTarget(server.getUrl(), null, null, false);
+            monitor.addTargets(Collections.singletonList(target));
+            awaitResult(monitor, target, "TLSv1.2");
+
+            HttpURLConnection connection = (HttpURLConnection) new URL(
+                    "http://127.0.0.1:" + endpoint.getPort() + "/metrics").openConnection();
+            assertThat(connection.getResponseCode()).isEqualTo(200);
+            assertThat(connection.getContentType()).isEqualTo(MonitorMetricsEndpoint.CONTENT_TYPE);
+            String metrics = read(connection.getInputStream());
+
+            assertThat(metrics)
+                    .contains("# TYPE tls_monitor_targets gauge\ntls_monitor_targets 1\n")
+                    .contains("tls_monitor_targets_by_protocol{protocol=\"TLSv1.2\"} 1\n")
+                    .contains("tls_monitor_probes_total{outcome=\"success\"} ")
+                    .contains("# TYPE tls_monitor_handshake_duration_seconds histogram")
+                    .contains("tls_monitor_handshake_duration_seconds_bucket{le=\"+Inf\"} ")
+                    .contains("tls_monitor_certificate_min_days_to_expiry ");
+        }
+    }
+
+    @Test
+    public void slowResolution_shouldNotDelayOtherTargets() throws Exception {
+        int slowHosts = 8;
+        TLSSnifferService snifferService = new TLSSnifferService();
+        CountDownLatch resolving = new CountDownLatch(slowHosts);
+        CountDownLatch release = new CountDownLatch(1);
+        DnsResolver resolver = host -> {
+            if (host.endsWith(".slow.example")) {
+                resolving.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new UnknownHostException(host);
+            }
+            return new InetAddress[]{InetAddress.getLoopbackAddress()};
+        };
+        try (LoopbackTLSServer server = new LoopbackTLSServer("TLSv1.2");
+             SSLEngineProbe probe = new SSLEngineProbe(snifferService, 1, 5000);
+             TLSMonitor monitor = new TLSMonitor(snifferService, probe, 100, slowHosts + 2, 1, 60000, null, resolver)) {
+            List<AnalysisTarget> slow = new ArrayList<>();
+            for (int i = 0; i < slowHosts; i++) {
+                slow.add(new AnalysisTarget("https://host" + i + ".slow.example:" + server.getPort() + "/", null, null, false));
+            }
+            AnalysisTarget target = new AnalysisTarget(server.getUrl(), null, null, false);
+            try {
+                monitor.addTargets(slow);
+                assertThat(resolving.await(5, TimeUnit.SECONDS)).isTrue();
+                monitor.addTargets(Collections.singletonList(target));
+
+                awaitResult(monitor, target, "TLSv1.2");
+                // the hanging lookups hold no probe permits
+                MonitorResult latest = monitor.getLastResult(target);
+                awaitNewerResult(monitor, target, latest);
+            } finally {
+                release.countDown();
+            }
+            for (AnalysisTarget slowTarget : slow) {
+                assertThat(awaitFailure(monitor, slowTarget).getFailure()).contains("slow.example");
+            }
+        }
+    }
+
+    private static MonitorResult awaitResult(TLSMonitor monitor, AnalysisTarget target, String protocol) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20000;
+        while (System.currentTimeMillis() < deadline) {
+            MonitorResult result = monitor.getLastResult(target);
+            if (result != null && protocol.equals(result.getProtocol())) {
+                return result;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("No " + protocol + " result for " + target + ": " + monitor.getLastResult(target));
+    }
+
+    private static void awaitNewerResult(TLSMonitor monitor, AnalysisTarget target, MonitorResult result) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20000;
+        while (System.currentTimeMillis() < deadline) {
+            if (monitor.getLastResult(target) != result) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("No result after " + result + " for " + target);
+    }
+
+    private static MonitorResult awaitFailure(TLSMonitor monitor, AnalysisTarget target) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 20000;
+        while (System.currentTimeMillis() < deadline) {
+            MonitorResult result = monitor.getLastResult(target);
+            if (result != null && !result.isSuccessful()) {
+                return result;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("No failure for " + target + ": " + monitor.getLastResult(target));
+    }
+
+    private static String read(InputStream in) throws Exception {
+        try (InputStream body = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.schmittjoaopedro.tls;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TLSRecordParserTest {
+
+    // ServerHello (2 byte body) and ServerHelloDone in one record, Certificate split across two records,
+    // then ChangeCipherSpec, an encrypted Finished, application data and a plain alert
+    private static final byte[] SERVER_FLIGHT = {
+            0x16, 0x03, 0x03, 0x00, 0x0a,
+            0x02, 0x00, 0x00, 0x02, 0x01, 0x02,
+            0x0e, 0x00, 0x00, 0x00,
+            0x16, 0x03, 0x03, 0x00, 0x06,
+            0x0b, 0x00, 0x00, 0x04, 0x01, 0x02,
+            0x16, 0x03, 0x03, 0x00, 0x02,
+            0x03, 0x04,
+            0x14, 0x03, 0x03, 0x00, 0x01,
+            0x01,
+            0x16, 0x03, 0x03, 0x00, 0x03,
+            0x7f, 0x7e, 0x7d,
+            0x17, 0x03, 0x03, 0x00, 0x02,
+            0x55, 0x66
+    };
+
+    @Test
+    public void bulkFeed_shouldEmitRecordsAndHandshakeMessages() {
+        List<String> events = new ArrayList<>();
+        TLSRecordParser parser = new TLSRecordParser(false, recordingListener(events));
+
+        parser.feed(SERVER_FLIGHT, 0, SERVER_FLIGHT.length);
+
+        assertThat(events).containsExactly(
+                "record Handshake TLSv1.2 10",
+                "handshake ServerHello 2",
+                "handshake ServerHelloDone 0",
+                "record Handshake TLSv1.2 6",
+                "handshake Certificate 4",
+                "record Handshake TLSv1.2 2",
+                "record ChangeCipherSpec TLSv1.2 1",
+                "ccs",
+                "record Handshake TLSv1.2 3",
+                "encrypted 3",
+                "record ApplicationData TLSv1.2 2");
+    }
+
+    @Test
+    public void byteByByteFeed_shouldMatchBulkFeed() {
+        List<String> bulkEvents = new ArrayList<>();
+        new TLSRecordParser(false, recordingListener(bulkEvents)).feed(SERVER_FLIGHT, 0, SERVER_FLIGHT.length);
+        List<String> events = new ArrayList<>();
+        TLSRecordParser parser = new TLSRecordParser(false, recordingListener(events));
+
+        for (byte b : SERVER_FLIGHT) {
+            parser.feed(b);
+        }
+
+        assertThat(events).isEqualTo(bulkEvents);
+    }
+
+    @Test
+    public void alertAndGarbage_shouldBeReported() {
+        List<String> events = new ArrayList<>();
+        TLSRecordParser parser = new TLSRecordParser(true, recordingListener(events));
+
+        parser.feed(new byte[]{0x15, 0x03, 0x03, 0x00, 0x02, 0x02, 0x28, 'G', 'E', 'T', ' ', '/'}, 0, 12);
+
+        assertThat(events).containsExactly("record Alert TLSv1.2 2", "alert 2 40", "unrecognized");
+    }
+
+    private TLSRecordListener recordingListener(List<String> events) {
+        return new TLSRecordListener() {
+            @Override
+            public void onRecord(boolean output, int contentType, int version, int length) {
+                events.add("record " + TLSContentType.nameOf(contentType) + " " + TLSRecordParser.versionName(version) + " " + length);
+            }
+
+            @Override
+            public void onHandshakeMessage(boolean output, int handshakeType, int length) {
+                events.add("handshake " + TLSHandshakeType.nameOf(handshakeType) + " " + length);
+            }
+
+            @Override
+            public void onEncryptedHandshakeMessage(boolean output, int length) {
+                events.add("encrypted " + length);
+            }
+
+            @Override
+            public void onChangeCipherSpec(boolean output) {
+                events.add("ccs");
+            }
+
+            @Override
+            public void onAlert(boolean output, int level, int description) {
+                events.add("alert " + level + " " + description);
+            }
+
+            @Override
+            public void onUnrecognizedData(boolean output) {
+                events.add("unrecognized");
+            }
+        };
+    }
+
+}
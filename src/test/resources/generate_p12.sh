@@ -19,4 +19,25 @@ keytool -list \
   -keystore truststore.p12 \
   -storepass truststore
 
-cd ..
\ No newline at end of file
+cd ..
+# Key pair of the loopback TLS server used by tests, benchmarks and the load harness.
+# The same file is used as the client truststore of those runs.
+
+cd certs
+
+rm -rf localhost.p12
+
+keytool -genkeypair \
+  -alias localhost \
+  -keyalg RSA \
+  -keysize 2048 \
+  -sigalg SHA256withRSA \
+  -dname CN=localhost \
+  -ext san=dns:localhost,ip:127.0.0.1,ip:127.0.0.2 \
+  -validity 36500 \
+  -keystore localhost.p12 \
+  -storetype PKCS12 \
+  -storepass localhost \
+  -keypass localhost
+
+cd ..